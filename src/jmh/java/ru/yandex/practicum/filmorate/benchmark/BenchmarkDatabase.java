@@ -0,0 +1,259 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.storage.EventLog;
+import ru.yandex.practicum.filmorate.storage.ReadModelSnapshot;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.service.user.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBehindQueue;
+import ru.yandex.practicum.filmorate.storage.film.LikesMatrixIndex;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.film.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.film.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Встроенная H2 со схемой приложения, заполненная синтетическими данными, и собранные
+ * поверх неё хранилища и сервисы — без поднятия Spring-контекста.
+ *
+ * <p>Режим хранения повторяет профили приложения: {@code inmemory} — база в памяти,
+ * {@code file} — файловая база во временном каталоге с теми же настройками кэша и
+ * отложенной записи, что и в {@code application-file.properties}.
+ *
+ * <p>Размер данных задаётся числом лайков: на каждого пользователя приходится
+ * {@link #LIKES_PER_USER} лайков и {@link #FRIENDS_PER_USER} друзей.
+ */
+public class BenchmarkDatabase {
+    public static final int LIKES_PER_USER = 100;
+    public static final int FRIENDS_PER_USER = 20;
+
+    private static final int BATCH_SIZE = 5_000;
+    private static final long CACHE_MAX_WEIGHT = 1_000_000;
+    private static final int POOL_SIZE = 10;
+    private static final String H2_SETTINGS = ";QUERY_CACHE_SIZE=64";
+    private static final String H2_FILE_SETTINGS = ";CACHE_SIZE=65536;WRITE_DELAY=500;MAX_COMPACT_TIME=2000";
+
+    private final HikariDataSource database;
+    private final Path directory;
+    private final JdbcTemplate jdbcTemplate;
+    private final EventLog eventLog;
+    private final int users;
+    private final int films;
+
+    private final Storages storages;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final FilmService filmService;
+    private final UserService userService;
+
+    public BenchmarkDatabase(int likes) {
+        this(likes, "inmemory");
+    }
+
+    public BenchmarkDatabase(int likes, String storage) {
+        String name = "benchmark-" + UUID.randomUUID();
+        this.database = new HikariDataSource();
+        switch (storage) {
+            case "inmemory" -> {
+                this.directory = null;
+                database.setJdbcUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1" + H2_SETTINGS);
+            }
+            case "file" -> {
+                try {
+                    this.directory = Files.createTempDirectory("filmorate-benchmark");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                database.setJdbcUrl("jdbc:h2:file:" + directory.resolve(name).toAbsolutePath() + H2_SETTINGS
+                        + H2_FILE_SETTINGS);
+            }
+            default -> throw new IllegalArgumentException("Неизвестный режим хранения: " + storage);
+        }
+        database.setUsername("sa");
+        database.setMaximumPoolSize(POOL_SIZE);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(database);
+        this.jdbcTemplate = new JdbcTemplate(database);
+        this.eventLog = new EventLog(jdbcTemplate);
+        this.users = Math.max(FRIENDS_PER_USER + 1, likes / LIKES_PER_USER);
+        this.films = Math.max(LIKES_PER_USER, likes / LIKES_PER_USER);
+
+        seed();
+        // события заполнения не нужны ни одному потребителю журнала и только раздувают базу
+        jdbcTemplate.execute("TRUNCATE TABLE events");
+
+        this.storages = open("");
+        this.filmStorage = storages.filmStorage();
+        this.userStorage = storages.userStorage();
+        this.filmService = new FilmService(filmStorage, userStorage);
+        this.userService = new UserService(userStorage);
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public int getFilms() {
+        return films;
+    }
+
+    public FilmDbStorage getFilmStorage() {
+        return filmStorage;
+    }
+
+    public UserDbStorage getUserStorage() {
+        return userStorage;
+    }
+
+    public FilmService getFilmService() {
+        return filmService;
+    }
+
+    public UserService getUserService() {
+        return userService;
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    /**
+     * Сохраняет индексы хранилищ в файл снимка модели чтения.
+     */
+    public void saveSnapshot(String file) {
+        new ReadModelSnapshot(jdbcTemplate, eventLog, storages.popularFilmsIndex(), storages.likesMatrix(),
+                storages.friendGraph(), file, 0).save();
+    }
+
+    /**
+     * Холодный старт: собирает хранилища на пустых индексах и инициализирует их — из снимка
+     * {@code snapshotFile}, если он задан и актуален, иначе сканированием таблиц.
+     */
+    public Storages open(String snapshotFile) {
+        PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex();
+        LikesMatrixIndex likesMatrix = new LikesMatrixIndex();
+        FriendGraphIndex friendGraph = new FriendGraphIndex(CACHE_MAX_WEIGHT);
+        ReadModelSnapshot readModelSnapshot = new ReadModelSnapshot(jdbcTemplate, eventLog, popularFilmsIndex,
+                likesMatrix, friendGraph, snapshotFile, 0);
+        readModelSnapshot.load();
+
+        ReferenceDataCache referenceDataCache = new ReferenceDataCache(jdbcTemplate);
+        referenceDataCache.invalidate();
+        LikeWriteBehindQueue likeQueue = new LikeWriteBehindQueue(
+                new TransactionTemplate(new DataSourceTransactionManager(database)), false, 200, 1000, 100_000, 1000, 5, false);
+        FilmDbStorage films = new FilmDbStorage(jdbcTemplate, popularFilmsIndex, referenceDataCache, likeQueue,
+                likesMatrix, new TrendingFilmsIndex(), new FilmSearchIndex(""), readModelSnapshot, CACHE_MAX_WEIGHT);
+        films.init();
+        UserDbStorage users = new UserDbStorage(jdbcTemplate, friendGraph, readModelSnapshot, CACHE_MAX_WEIGHT);
+        users.init();
+        return new Storages(films, users, popularFilmsIndex, likesMatrix, friendGraph);
+    }
+
+    public void shutdown() {
+        jdbcTemplate.execute("SHUTDOWN");
+        database.close();
+        if (directory != null) {
+            try {
+                FileSystemUtils.deleteRecursively(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void seed() {
+        insertInBatches("INSERT INTO users (id, login, email, name, birthday) VALUES (?, ?, ?, ?, ?)", users,
+                (ps, i) -> {
+                    ps.setInt(1, i + 1);
+                    ps.setString(2, "user" + i);
+                    ps.setString(3, "user" + i + "@example.com");
+                    ps.setString(4, "Пользователь " + i);
+                    ps.setDate(5, Date.valueOf(LocalDate.of(1990, 1, 1).plusDays(i % 10_000)));
+                });
+
+        insertInBatches("INSERT INTO films (id, name, description, release_date, duration, mpa_rating_id) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", films, (ps, i) -> {
+                    ps.setInt(1, i + 1);
+                    ps.setString(2, "Фильм " + i);
+                    ps.setString(3, "Описание фильма " + i);
+                    ps.setDate(4, Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(i % 25_000)));
+                    ps.setInt(5, 90 + i % 90);
+                    ps.setInt(6, i % 5 + 1);
+                });
+
+        insertInBatches("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", films,
+                (ps, i) -> {
+                    ps.setInt(1, i + 1);
+                    ps.setInt(2, i % 6 + 1);
+                });
+
+        // Пользователь u лайкает фильмы (u + k * u) % films для k < LIKES_PER_USER: популярность
+        // распределена неравномерно, а пары (фильм, пользователь) не повторяются.
+        insertInBatches("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", users * LIKES_PER_USER,
+                (ps, i) -> {
+                    int user = i / LIKES_PER_USER;
+                    int k = i % LIKES_PER_USER;
+                    ps.setInt(1, (user % LIKES_PER_USER + k * (films / LIKES_PER_USER)) % films + 1);
+                    ps.setInt(2, user + 1);
+                });
+        jdbcTemplate.update("UPDATE films f SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)");
+
+        insertInBatches("INSERT INTO friendships (user_id, friend_id, status) VALUES (?, ?, 'CONFIRMED')",
+                users * FRIENDS_PER_USER, (ps, i) -> {
+                    int user = i / FRIENDS_PER_USER;
+                    int k = i % FRIENDS_PER_USER;
+                    ps.setInt(1, user + 1);
+                    ps.setInt(2, (user + k + 1) % users + 1);
+                });
+
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + (users + 1));
+        jdbcTemplate.execute("ALTER TABLE films ALTER COLUMN id RESTART WITH " + (films + 1));
+    }
+
+    private void insertInBatches(String sql, int rows, RowSetter setter) {
+        for (int from = 0; from < rows; from += BATCH_SIZE) {
+            int offset = from;
+            int size = Math.min(BATCH_SIZE, rows - from);
+            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    setter.set(ps, offset + i);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+    }
+
+    public record Storages(FilmDbStorage filmStorage, UserDbStorage userStorage, PopularFilmsIndex popularFilmsIndex,
+                           LikesMatrixIndex likesMatrix, FriendGraphIndex friendGraph) {
+    }
+
+    @FunctionalInterface
+    private interface RowSetter {
+        void set(PreparedStatement ps, int row) throws SQLException;
+    }
+}
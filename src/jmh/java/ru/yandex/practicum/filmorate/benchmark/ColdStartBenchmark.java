@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Холодный старт хранилищ: построение индексов сканированием таблиц против загрузки
+ * из снимка модели чтения. Поисковый индекс в обоих случаях строится из базы.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class ColdStartBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int likes;
+
+    private BenchmarkDatabase database;
+    private Path directory;
+    private String snapshotFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        database = new BenchmarkDatabase(likes);
+        directory = Files.createTempDirectory("filmorate-snapshot");
+        snapshotFile = directory.resolve("read-model.snapshot").toString();
+        database.saveSnapshot(snapshotFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        database.shutdown();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public BenchmarkDatabase.Storages scanTables() {
+        return database.open("");
+    }
+
+    @Benchmark
+    public BenchmarkDatabase.Storages loadSnapshot() {
+        return database.open(snapshotFile);
+    }
+}
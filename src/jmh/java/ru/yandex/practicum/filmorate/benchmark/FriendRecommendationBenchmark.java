@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.storage.EventLog;
+import ru.yandex.practicum.filmorate.storage.ReadModelSnapshot;
+import ru.yandex.practicum.filmorate.storage.film.LikesMatrixIndex;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка рекомендаций друзей на графе в памяти: с кэшем результатов и без него
+ * (полный обход друзей друзей на каждый вызов). Целевые перцентили проверяет
+ * {@link LatencyTargets} после прогона.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FriendRecommendationBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int likes;
+
+    private BenchmarkDatabase database;
+    private FriendGraphIndex cachedGraph;
+    private FriendGraphIndex uncachedGraph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(likes);
+        cachedGraph = buildGraph(1_000_000);
+        uncachedGraph = buildGraph(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public long[] cached() {
+        return cachedGraph.recommendFriends(randomUser(), 10);
+    }
+
+    @Benchmark
+    public long[] uncached() {
+        return uncachedGraph.recommendFriends(randomUser(), 10);
+    }
+
+    private FriendGraphIndex buildGraph(long cacheMaxWeight) {
+        FriendGraphIndex graph = new FriendGraphIndex(cacheMaxWeight);
+        // пустой путь к снимку: граф всегда строится из таблицы friendships
+        ReadModelSnapshot noSnapshot = new ReadModelSnapshot(database.getJdbcTemplate(),
+                new EventLog(database.getJdbcTemplate()), new PopularFilmsIndex(), new LikesMatrixIndex(), graph, "", 0);
+        new UserDbStorage(database.getJdbcTemplate(), graph, noSnapshot, 0).init();
+        return graph;
+    }
+
+    private long randomUser() {
+        return ThreadLocalRandom.current().nextInt(database.getUsers()) + 1;
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Проверяет результаты JMH (JSON) против целевых задержек и завершается с ошибкой,
+ * если какой-то бенчмарк их превысил. Бенчмарки, которых нет в результатах
+ * (например, отфильтрованные через {@code jmh.args}), пропускаются.
+ */
+public final class LatencyTargets {
+
+    /**
+     * Целевой 99-й перцентиль в микросекундах для бенчмарков в режиме SampleTime.
+     */
+    private static final Map<String, Double> P99_MICROS = Map.of(
+            FriendRecommendationBenchmark.class.getName() + ".cached", 50.0,
+            FriendRecommendationBenchmark.class.getName() + ".uncached", 2_000.0
+    );
+
+    private LatencyTargets() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        JsonNode results = new ObjectMapper().readTree(new File(args[0]));
+        List<String> violations = new ArrayList<>();
+
+        for (JsonNode result : results) {
+            Double target = P99_MICROS.get(result.path("benchmark").asText());
+            if (target == null) {
+                continue;
+            }
+            JsonNode metric = result.path("primaryMetric");
+            double p99 = metric.path("scorePercentiles").path("99.0").asDouble();
+            String params = result.path("params").toString();
+            System.out.printf("%s %s: p99 = %.1f %s (цель %.1f)%n",
+                    result.path("benchmark").asText(), params, p99, metric.path("scoreUnit").asText(), target);
+            if (p99 > target) {
+                violations.add(result.path("benchmark").asText() + " " + params);
+            }
+        }
+
+        if (!violations.isEmpty()) {
+            throw new IllegalStateException("Превышены целевые задержки: " + violations);
+        }
+    }
+}
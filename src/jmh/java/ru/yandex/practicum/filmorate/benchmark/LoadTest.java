@@ -0,0 +1,216 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Нагрузочный прогон приложения целиком: поднимает Filmorate на случайном порту в каждом
+ * профиле хранения (in-memory и файловая H2) сначала на платформенных потоках Tomcat, затем
+ * на виртуальных, и для каждого режима печатает пропускную способность и перцентили задержки.
+ * Файловая база создаётся во временном каталоге и удаляется после прогона.
+ *
+ * <p>Параметры: {@code -Dloadtest.concurrency} (одновременных клиентов, по умолчанию 1000),
+ * {@code -Dloadtest.requests} (запросов на режим, по умолчанию 50000),
+ * {@code -Dloadtest.profiles} (профили хранения через запятую, по умолчанию {@code inmemory,file})
+ * и {@code -Dloadtest.logging} (режимы логирования через запятую, по умолчанию {@code quiet}):
+ * <ul>
+ *     <li>{@code quiet} — только предупреждения и ошибки;</li>
+ *     <li>{@code verbose} — как до настройки логирования: Logbook пишет тела всех запросов и ответов
+ *     целиком, приложение пишет каждый запрос и дампы сущностей;</li>
+ *     <li>{@code tuned} — Logbook с {@code HttpLogStrategy} и настройками из application.properties,
+ *     приложение на уровне INFO.</li>
+ * </ul>
+ * В режимах {@code verbose} и {@code tuned} лог пишется в файл во временном каталоге, а не в консоль.
+ */
+public final class LoadTest {
+    private static final int USERS = 1_000;
+    private static final int FILMS = 200;
+    private static final int LIKES_PER_USER = 5;
+    private static final int FRIENDS_PER_USER = 5;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.getInteger("loadtest.concurrency", 1_000);
+        int requests = Integer.getInteger("loadtest.requests", 50_000);
+        String[] profiles = System.getProperty("loadtest.profiles", "inmemory,file").split(",");
+        String[] loggingModes = System.getProperty("loadtest.logging", "quiet").split(",");
+
+        List<String> report = new ArrayList<>();
+        for (String logging : loggingModes) {
+            for (String profile : profiles) {
+                for (boolean virtualThreads : new boolean[]{false, true}) {
+                    report.add(run(profile.trim(), logging.trim(), virtualThreads, concurrency, requests));
+                }
+            }
+        }
+        System.out.printf("%nКлиентов: %d, запросов на режим: %d%n", concurrency, requests);
+        report.forEach(System.out::println);
+    }
+
+    private static String run(String profile, String logging, boolean virtualThreads, int concurrency, int requests)
+            throws Exception {
+        Path directory = Files.createTempDirectory("filmorate-loadtest");
+        List<String> properties = new ArrayList<>(List.of(
+                "server.port=0",
+                "filmorate.h2.file=" + directory.resolve("filmorate").toAbsolutePath(),
+                "filmorate.h2.database-name=loadtest-" + profile + "-" + logging + "-" + virtualThreads,
+                "spring.threads.virtual.enabled=" + virtualThreads,
+                "filmorate.search.index-file=",
+                "filmorate.snapshot.file=",
+                "logging.level.root=WARN"));
+        properties.addAll(loggingProperties(logging, directory));
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .profiles(profile)
+                .properties(properties.toArray(String[]::new))
+                .run();
+        try (HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build()) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            seed(client, baseUrl);
+
+            measure(client, baseUrl, concurrency, Math.max(1, requests / 10));
+            long[] latencies = new long[requests];
+            long started = System.nanoTime();
+            int errors = measure(client, baseUrl, concurrency, requests, latencies);
+            double seconds = (System.nanoTime() - started) / 1e9;
+
+            Arrays.sort(latencies);
+            return String.format("%-26s %8.0f req/s  p50 %7.2f мс  p99 %7.2f мс  max %7.2f мс  ошибок %d",
+                    profile + "/" + logging + "/" + (virtualThreads ? "virtual" : "platform"), requests / seconds,
+                    percentile(latencies, 0.50), percentile(latencies, 0.99),
+                    latencies[latencies.length - 1] / 1e6, errors);
+        } finally {
+            context.close();
+            FileSystemUtils.deleteRecursively(directory);
+        }
+    }
+
+    private static List<String> loggingProperties(String logging, Path directory) {
+        List<String> toFile = List.of(
+                "logging.file.name=" + directory.resolve("filmorate.log").toAbsolutePath(),
+                "logging.threshold.console=OFF",
+                "logging.level.org.zalando.logbook=TRACE");
+        return switch (logging) {
+            case "quiet" -> List.of();
+            case "verbose" -> Stream.concat(toFile.stream(), Stream.of(
+                    "logging.level.ru.yandex.practicum.filmorate=DEBUG",
+                    "filmorate.logging.http.bodyless-paths=",
+                    "filmorate.logging.http.sample-rate=1",
+                    "logbook.write.max-body-size=-1")).toList();
+            case "tuned" -> Stream.concat(toFile.stream(), Stream.of(
+                    "logging.level.ru.yandex.practicum.filmorate=INFO")).toList();
+            default -> throw new IllegalArgumentException("Неизвестный режим логирования: " + logging);
+        };
+    }
+
+    private static void seed(HttpClient client, String baseUrl) throws IOException, InterruptedException {
+        for (int i = 1; i <= USERS; i++) {
+            post(client, baseUrl + "/users", """
+                    {"login": "user%d", "email": "user%d@example.com", "name": "Пользователь %d",
+                     "birthday": "1990-01-01"}""".formatted(i, i, i));
+        }
+        for (int i = 1; i <= FILMS; i++) {
+            post(client, baseUrl + "/films", """
+                    {"name": "Фильм %d", "description": "Описание фильма %d", "releaseDate": "2000-01-01",
+                     "duration": 100, "mpa": {"id": %d}}""".formatted(i, i, i % 5 + 1));
+        }
+        for (int user = 1; user <= USERS; user++) {
+            for (int k = 0; k < LIKES_PER_USER; k++) {
+                put(client, baseUrl + "/films/" + ((user * 7 + k * 13) % FILMS + 1) + "/like/" + user);
+            }
+            for (int k = 1; k <= FRIENDS_PER_USER; k++) {
+                put(client, baseUrl + "/users/" + user + "/friends/" + ((user + k * 31) % USERS + 1));
+            }
+        }
+    }
+
+    private static int measure(HttpClient client, String baseUrl, int concurrency, int requests) throws Exception {
+        return measure(client, baseUrl, concurrency, requests, new long[requests]);
+    }
+
+    /**
+     * Выполняет {@code requests} GET-запросов к типичным эндпоинтам, держа не больше
+     * {@code concurrency} запросов в полёте, и записывает задержку каждого в наносекундах.
+     */
+    private static int measure(HttpClient client, String baseUrl, int concurrency, int requests, long[] latencies)
+            throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int c = 0; c < concurrency; c++) {
+                workers.add(clients.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+                        String path = switch (i % 5) {
+                            case 0 -> "/films/popular?count=10";
+                            case 1 -> "/films/" + (random.nextInt(FILMS) + 1);
+                            case 2 -> "/users/" + (random.nextInt(USERS) + 1) + "/friends";
+                            case 3 -> "/films";
+                            default -> "/users/" + (random.nextInt(USERS) + 1) + "/friends/common/"
+                                    + (random.nextInt(USERS) + 1);
+                        };
+                        long started = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(
+                                    HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(),
+                                    HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 400) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                        latencies[i] = System.nanoTime() - started;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        return errors.get();
+    }
+
+    private static void post(HttpClient client, String url, String json) throws IOException, InterruptedException {
+        client.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static void put(HttpClient client, String url) throws IOException, InterruptedException {
+        client.send(HttpRequest.newBuilder(URI.create(url))
+                .PUT(HttpRequest.BodyPublishers.noBody())
+                .build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+}
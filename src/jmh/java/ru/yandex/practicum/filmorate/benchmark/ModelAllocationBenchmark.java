@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.CompactFriendMap;
+import ru.yandex.practicum.filmorate.model.CompactLongSet;
+import ru.yandex.practicum.filmorate.model.FriendshipStatus;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Память на гидратацию лайков фильма и друзей пользователя: {@link HashSet}/{@link HashMap}
+ * с упакованными id против {@link CompactLongSet}/{@link CompactFriendMap}. Id добавляются
+ * по возрастанию, как их отдаёт база. Выделенные байты на операцию показывает профилировщик
+ * {@code -prof gc} (метрика {@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ModelAllocationBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int size;
+
+    private long[] ids;
+    private FriendshipStatus[] statuses;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ids = new long[size];
+        statuses = new FriendshipStatus[size];
+        long id = 0;
+        for (int i = 0; i < size; i++) {
+            id += 1 + random.nextInt(10);
+            ids[i] = id;
+            statuses[i] = random.nextBoolean() ? FriendshipStatus.CONFIRMED : FriendshipStatus.PENDING;
+        }
+    }
+
+    @Benchmark
+    public Set<Long> hashSetLikes() {
+        Set<Long> likes = new HashSet<>();
+        for (long id : ids) {
+            likes.add(id);
+        }
+        return likes;
+    }
+
+    @Benchmark
+    public Set<Long> compactLikes() {
+        CompactLongSet likes = new CompactLongSet();
+        for (long id : ids) {
+            likes.add(id);
+        }
+        return likes;
+    }
+
+    @Benchmark
+    public Map<Long, FriendshipStatus> hashMapFriends() {
+        Map<Long, FriendshipStatus> friends = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            friends.put(ids[i], statuses[i]);
+        }
+        return friends;
+    }
+
+    @Benchmark
+    public Map<Long, FriendshipStatus> compactFriends() {
+        Map<Long, FriendshipStatus> friends = new CompactFriendMap();
+        for (int i = 0; i < ids.length; i++) {
+            friends.put(ids[i], statuses[i]);
+        }
+        return friends;
+    }
+}
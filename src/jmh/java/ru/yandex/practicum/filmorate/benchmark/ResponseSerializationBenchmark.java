@@ -0,0 +1,98 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import ru.yandex.practicum.filmorate.controller.JsonResponseCache;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запись тела ответа {@code /films/popular} и {@code /genres}: сериализация через
+ * {@link MappingJackson2HttpMessageConverter}, как у обычного {@code @RestController}, против готовых байтов
+ * из {@link JsonResponseCache}. Данные загружаются заранее, поэтому измеряется только запись ответа.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ResponseSerializationBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int likes;
+
+    @Param({"10", "100"})
+    public int count;
+
+    private BenchmarkDatabase database;
+    private MappingJackson2HttpMessageConverter converter;
+    private JsonResponseCache responseCache;
+    private List<Film> popular;
+    private List<Genre> genres;
+    private String version;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(likes);
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        converter = new MappingJackson2HttpMessageConverter(objectMapper);
+        responseCache = new JsonResponseCache(objectMapper, 8_000_000);
+        popular = database.getFilmService().getPopularFilms(count);
+        genres = database.getFilmStorage().getAllGenres();
+        version = database.getFilmService().getPopularFilmsVersion();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public MockHttpOutputMessage popularJackson() throws IOException {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(popular, MediaType.APPLICATION_JSON, message);
+        return message;
+    }
+
+    @Benchmark
+    public MockHttpOutputMessage popularCached() throws IOException {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        message.getBody().write(responseCache.json("popular-" + count, version, () -> popular).getBody());
+        return message;
+    }
+
+    @Benchmark
+    public MockHttpOutputMessage genresJackson() throws IOException {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(genres, MediaType.APPLICATION_JSON, message);
+        return message;
+    }
+
+    @Benchmark
+    public MockHttpOutputMessage genresCached() throws IOException {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        message.getBody().write(responseCache.json("genres", version, () -> genres).getBody());
+        return message;
+    }
+}
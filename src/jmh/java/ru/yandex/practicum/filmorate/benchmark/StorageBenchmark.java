@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути хранилищ и сервисов на встроенной H2 с синтетическими данными.
+ * Размер данных задаётся параметром {@code likes} (10k / 100k / 1M лайков),
+ * режим хранения H2 — параметром {@code storage} ({@code inmemory} / {@code file}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StorageBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int likes;
+
+    @Param({"inmemory", "file"})
+    public String storage;
+
+    private BenchmarkDatabase database;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase(likes, storage);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms() {
+        return database.getFilmService().getPopularFilms(10);
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilmsByGenreAndYear() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return database.getFilmService().getPopularFilms(10, random.nextInt(6) + 1, 1950 + random.nextInt(60));
+    }
+
+    @Benchmark
+    public List<Film> searchFilms() {
+        return database.getFilmService().searchFilms("фильм " + ThreadLocalRandom.current().nextInt(1000),
+                "title,description", 10);
+    }
+
+    @Benchmark
+    public Collection<Film> getAllFilms() {
+        return database.getFilmService().getAllFilms();
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return database.getUserService().getCommonFriends(randomUser(random), randomUser(random));
+    }
+
+    @Benchmark
+    public List<User> getFriendRecommendations() {
+        return database.getUserService().getFriendRecommendations(randomUser(ThreadLocalRandom.current()), 10);
+    }
+
+    @Benchmark
+    public List<Film> getRecommendedFilms() {
+        return database.getFilmService().getRecommendedFilms(randomUser(ThreadLocalRandom.current()), 10);
+    }
+
+    @Benchmark
+    public void addLike() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        database.getFilmService().addLike((long) random.nextInt(database.getFilms()) + 1, randomUser(random));
+    }
+
+    @Benchmark
+    public void addFriend() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long userId = randomUser(random);
+        long friendId = userId % database.getUsers() + 1;
+        database.getUserService().addFriend(userId, friendId);
+    }
+
+    private long randomUser(ThreadLocalRandom random) {
+        return random.nextInt(database.getUsers()) + 1;
+    }
+}
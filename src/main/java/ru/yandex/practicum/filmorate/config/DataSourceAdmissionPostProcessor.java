@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Ставит ограничение числа одновременных обращений к базе перед пулом соединений, чтобы
+ * тысячи виртуальных потоков не выстраивались в очередь внутри пула и H2.
+ * Лимит по умолчанию равен размеру пула Hikari; {@code 0} отключает ограничение.
+ */
+@Slf4j
+@Component
+public class DataSourceAdmissionPostProcessor implements BeanPostProcessor {
+    private final int maxConcurrent;
+    private final long timeoutMs;
+
+    public DataSourceAdmissionPostProcessor(
+            @Value("${filmorate.datasource.admission.max-concurrent:10}") int maxConcurrent,
+            @Value("${filmorate.datasource.admission.timeout-ms:5000}") long timeoutMs) {
+        this.maxConcurrent = maxConcurrent;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (maxConcurrent > 0 && bean instanceof DataSource dataSource
+                && !(bean instanceof AdmissionControlledDataSource)) {
+            log.info("Доступ к DataSource {} ограничен {} одновременными соединениями", beanName, maxConcurrent);
+            return new AdmissionControlledDataSource(dataSource, maxConcurrent, timeoutMs);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.util.AntPathMatcher;
+import org.zalando.logbook.Correlation;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.HttpResponse;
+import org.zalando.logbook.Precorrelation;
+import org.zalando.logbook.Sink;
+import org.zalando.logbook.Strategy;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Стратегия Logbook для горячих путей.
+ *
+ * <ul>
+ *     <li>У GET-запросов к коллекциям ({@code bodylessPaths}) тела запроса и ответа не буферизуются
+ *     и не пишутся: иначе каждый {@code GET /films} копировал бы в память и в лог весь каталог,
+ *     а потоковые выгрузки теряли бы потоковость.</li>
+ *     <li>Запрос и ответ пишутся одной записью после ответа: все ответы с ошибкой (4xx, 5xx)
+ *     и доля {@code sampleRate} успешных.</li>
+ * </ul>
+ */
+public class HttpLogStrategy implements Strategy {
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final List<String> bodylessPaths;
+    private final double sampleRate;
+
+    public HttpLogStrategy(List<String> bodylessPaths, double sampleRate) {
+        this.bodylessPaths = List.copyOf(bodylessPaths);
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public HttpRequest process(HttpRequest request) throws IOException {
+        return isBodyless(request) ? request.withoutBody() : request.withBody();
+    }
+
+    @Override
+    public void write(Precorrelation precorrelation, HttpRequest request, Sink sink) {
+        // Запрос пишется вместе с ответом, когда уже известно, попадает ли он в лог
+    }
+
+    @Override
+    public HttpResponse process(HttpRequest request, HttpResponse response) throws IOException {
+        return isBodyless(request) ? response.withoutBody() : response.withBody();
+    }
+
+    @Override
+    public void write(Correlation correlation, HttpRequest request, HttpResponse response, Sink sink)
+            throws IOException {
+        if (response.getStatus() >= 400 || ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            sink.writeBoth(correlation, request, response);
+        }
+    }
+
+    private boolean isBodyless(HttpRequest request) {
+        if (!"GET".equals(request.getMethod())) {
+            return false;
+        }
+        String path = request.getPath();
+        for (String pattern : bodylessPaths) {
+            if (PATH_MATCHER.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
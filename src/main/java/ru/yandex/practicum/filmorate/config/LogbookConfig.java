@@ -0,0 +1,22 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.zalando.logbook.Strategy;
+
+import java.util.List;
+
+/**
+ * Заменяет стратегию Logbook по умолчанию (тела всех запросов и ответов целиком) на {@link HttpLogStrategy}.
+ */
+@Configuration
+public class LogbookConfig {
+
+    @Bean
+    public Strategy logbookStrategy(
+            @Value("${filmorate.logging.http.bodyless-paths:}") List<String> bodylessPaths,
+            @Value("${filmorate.logging.http.sample-rate:1.0}") double sampleRate) {
+        return new HttpLogStrategy(bodylessPaths, sampleRate);
+    }
+}
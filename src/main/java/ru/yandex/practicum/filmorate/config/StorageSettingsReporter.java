@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * После запуска пишет в лог фактические настройки хранилища: активный профиль, URL базы,
+ * параметры пула Hikari и ограничения доступа к нему, а также значения настроек H2, которые
+ * база реально применила. Заодно предупреждает о заведомо несогласованных настройках.
+ */
+@Slf4j
+@Component
+public class StorageSettingsReporter {
+    private static final Pattern H2_SETTINGS = Pattern.compile(
+            "(?i).*(CACHE|WRITE_DELAY|COMPACT|RETENTION|LOCK_TIMEOUT|MODE).*");
+
+    private final Environment environment;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final int admissionLimit;
+    private final boolean virtualThreads;
+
+    public StorageSettingsReporter(Environment environment, DataSource dataSource, JdbcTemplate jdbcTemplate,
+                                   @Value("${filmorate.datasource.admission.max-concurrent:10}") int admissionLimit,
+                                   @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.environment = environment;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.admissionLimit = admissionLimit;
+        this.virtualThreads = virtualThreads;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report() {
+        String[] profiles = environment.getActiveProfiles().length > 0
+                ? environment.getActiveProfiles() : environment.getDefaultProfiles();
+        log.info("Профили хранилища: {}, виртуальные потоки: {}", Arrays.toString(profiles), virtualThreads);
+
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            log.info("База данных: {} {}, URL {}", metaData.getDatabaseProductName(),
+                    metaData.getDatabaseProductVersion(), metaData.getURL());
+        } catch (SQLException e) {
+            log.warn("Не удалось получить сведения о базе данных: {}", e.getMessage());
+        }
+
+        reportPool();
+        reportH2Settings();
+    }
+
+    private void reportPool() {
+        HikariDataSource pool;
+        try {
+            pool = dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class) : null;
+        } catch (SQLException e) {
+            pool = null;
+        }
+        if (pool == null) {
+            log.info("Пул соединений: {}, ограничение одновременных обращений: {}",
+                    dataSource.getClass().getSimpleName(), admissionLimit);
+            return;
+        }
+        log.info("Пул соединений {}: размер {}, минимум простаивающих {}, ожидание соединения {} мс, "
+                        + "ограничение одновременных обращений: {}", pool.getPoolName(), pool.getMaximumPoolSize(),
+                pool.getMinimumIdle(), pool.getConnectionTimeout(), admissionLimit);
+        if (admissionLimit > pool.getMaximumPoolSize()) {
+            log.warn("Ограничение одновременных обращений ({}) больше размера пула ({}): лишние потоки будут "
+                    + "ждать соединения внутри пула", admissionLimit, pool.getMaximumPoolSize());
+        }
+        if (virtualThreads && admissionLimit <= 0) {
+            log.warn("Запросы обрабатываются на виртуальных потоках без ограничения одновременных обращений к базе");
+        }
+    }
+
+    private void reportH2Settings() {
+        Map<String, String> settings = new LinkedHashMap<>();
+        String sql = "SELECT setting_name, setting_value FROM information_schema.settings ORDER BY setting_name";
+        try {
+            jdbcTemplate.query(sql, rs -> {
+                String name = rs.getString("setting_name");
+                if (H2_SETTINGS.matcher(name).matches()) {
+                    settings.put(name, rs.getString("setting_value"));
+                }
+            });
+        } catch (DataAccessException e) {
+            log.debug("Настройки H2 недоступны: {}", e.getMessage());
+            return;
+        }
+        log.info("Настройки H2: {}", settings);
+    }
+}
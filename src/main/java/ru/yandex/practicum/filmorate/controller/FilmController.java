@@ -4,8 +4,16 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
+import ru.yandex.practicum.filmorate.model.View;
 import ru.yandex.practicum.filmorate.service.film.FilmService;
 
 import java.util.Collection;
@@ -17,50 +25,103 @@ import java.util.List;
 @RequiredArgsConstructor
 public class FilmController {
     private final FilmService filmService;
+    private final NdjsonWriter ndjsonWriter;
+    private final JsonResponseCache responseCache;
     private static final String LIKE_PATH = "/{id}/like/{userId}";
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public Film createFilm(@Valid @RequestBody Film film) {
-        log.info("Получен запрос на создание фильма: {}", film);
+        log.debug("Получен запрос на создание фильма: {}", film);
         return filmService.createFilm(film);
     }
 
     @PutMapping
     public Film updateFilm(@Valid @RequestBody Film film) {
-        log.info("Получен запрос на обновление фильма: {}", film);
+        log.debug("Получен запрос на обновление фильма: {}", film);
         return filmService.updateFilm(film);
     }
 
     @GetMapping
-    public Collection<Film> getAllFilms() {
-        log.info("Получен запрос на получение всех фильмов");
-        return filmService.getAllFilms();
+    public Collection<Film> getAllFilms(@RequestParam(required = false) Long afterId,
+                                        @RequestParam(required = false) Integer limit,
+                                        @RequestParam(required = false) String view) {
+        if (afterId == null && limit == null) {
+            log.debug("Получен запрос на получение всех фильмов, представление {}", view);
+            return filmService.getAllFilms(View.of(view));
+        }
+        log.debug("Получен запрос на получение фильмов после id {}, limit {}, представление {}", afterId, limit, view);
+        return filmService.getFilms(afterId, limit, View.of(view));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamFilms() {
+        log.debug("Получен запрос на потоковую выгрузку всех фильмов");
+        return ndjsonWriter.stream(filmService::streamFilms);
+    }
+
+    @GetMapping("/search")
+    public List<Film> searchFilms(@RequestParam String query,
+                                  @RequestParam(required = false) String by,
+                                  @RequestParam(required = false) Integer limit) {
+        log.debug("Получен запрос на поиск фильмов: '{}', поля {}, limit {}", query, by, limit);
+        return filmService.searchFilms(query, by, limit);
     }
 
     @GetMapping("/{id}")
-    public Film getFilmById(@PathVariable Long id) {
-        log.info("Получен запрос на получение фильма с id: {}", id);
+    public Film getFilmById(@PathVariable Long id, WebRequest request) {
+        log.debug("Получен запрос на получение фильма с id: {}", id);
+        if (request.checkNotModified("film-" + id + "-" + filmService.getFilmVersion(id))) {
+            return null;
+        }
         return filmService.getFilmById(id);
     }
 
     @PutMapping(LIKE_PATH)
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void addLike(@PathVariable Long id, @PathVariable Long userId) {
-        log.info("Получен запрос на добавление лайка фильму с id {} от пользователя с id {}", id, userId);
+        log.debug("Получен запрос на добавление лайка фильму с id {} от пользователя с id {}", id, userId);
         filmService.addLike(id, userId);
     }
 
+    @PostMapping("/likes/batch")
+    public List<LikeResult> addLikes(@RequestBody List<Like> likes) {
+        log.debug("Получен запрос на пакетное добавление {} лайков", likes.size());
+        return filmService.addLikes(likes);
+    }
+
     @DeleteMapping(LIKE_PATH)
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteLike(@PathVariable Long id, @PathVariable Long userId) {
-        log.info("Получен запрос на удаление лайка у фильма с id {} от пользователя с id {}", id, userId);
+        log.debug("Получен запрос на удаление лайка у фильма с id {} от пользователя с id {}", id, userId);
         filmService.deleteLike(id, userId);
     }
 
     @GetMapping("/popular")
-    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10") int count) {
-        log.info("Получен запрос на получение {} популярных фильмов", count);
-        return filmService.getPopularFilms(count);
+    public ResponseEntity<byte[]> getPopularFilms(@RequestParam(defaultValue = "10") int count,
+                                                  @RequestParam(required = false) Integer genreId,
+                                                  @RequestParam(required = false) Integer year,
+                                                  @RequestParam(required = false) String view,
+                                                  WebRequest request) {
+        log.debug("Получен запрос на получение {} популярных фильмов, жанр {}, год {}, представление {}",
+                count, genreId, year, view);
+        View projection = View.of(view);
+        // Ответ зависит от всех параметров запроса, поэтому они входят и в ETag, и в ключ кэша ответов.
+        String resource = "popular-" + count + "-" + (genreId != null ? genreId : "any") + "-"
+                + (year != null ? year : "any") + "-" + projection.name().toLowerCase();
+        String version = filmService.getPopularFilmsVersion();
+        if (request.checkNotModified(resource + "-" + version)) {
+            return null;
+        }
+        return responseCache.json(resource, version,
+                () -> filmService.getPopularFilms(count, genreId, year, projection));
+    }
+
+    @GetMapping("/trending")
+    public List<Film> getTrendingFilms(@RequestParam(defaultValue = "10") int count,
+                                       @RequestParam(required = false) String window,
+                                       @RequestParam(required = false) String view) {
+        log.debug("Получен запрос на получение {} трендовых фильмов за окно {}, представление {}", count, window, view);
+        return filmService.getTrendingFilms(count, TrendingWindow.of(window), View.of(view));
     }
 }
@@ -2,31 +2,39 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
 
-import java.util.List;
-
 @Slf4j
 @RestController
 @RequestMapping("/genres")
 @RequiredArgsConstructor
 public class GenreController {
     private final FilmDbStorage filmDbStorage;
+    private final JsonResponseCache responseCache;
 
     @GetMapping
-    public List<Genre> getAllGenres() {
-        log.info("Получен запрос на получение всех жанров");
-        return filmDbStorage.getAllGenres();
+    public ResponseEntity<byte[]> getAllGenres(WebRequest request) {
+        log.debug("Получен запрос на получение всех жанров");
+        String version = filmDbStorage.getReferenceDataVersion();
+        if (request.checkNotModified("reference-" + version)) {
+            return null;
+        }
+        return responseCache.json("genres", version, filmDbStorage::getAllGenres);
     }
 
     @GetMapping("/{id}")
-    public Genre getGenreById(@PathVariable Integer id) {
-        log.info("Получен запрос на получение жанра с id: {}", id);
+    public Genre getGenreById(@PathVariable Integer id, WebRequest request) {
+        log.debug("Получен запрос на получение жанра с id: {}", id);
+        if (request.checkNotModified("reference-" + filmDbStorage.getReferenceDataVersion())) {
+            return null;
+        }
         return filmDbStorage.getGenreById(id);
     }
 }
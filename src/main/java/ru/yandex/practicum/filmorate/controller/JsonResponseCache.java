@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+
+/**
+ * Кэш уже сериализованных JSON-ответов для версионированных данных (справочники, популярные фильмы).
+ * Тело ответа сериализуется один раз на версию данных и дальше отдаётся готовым массивом байтов,
+ * минуя {@code MappingJackson2HttpMessageConverter}.
+ *
+ * <p>Версия входит в ключ, поэтому после изменения данных прежний ответ больше не выдаётся и
+ * вытесняется из кэша по LRU. Размер кэша ограничен суммарным объёмом тел в байтах.
+ *
+ * <p>Версия должна меняться после коммита изменения: тело, прочитанное из базы до коммита под уже
+ * новой версией, иначе выдавалось бы до следующей записи. Версия популярных фильмов для этого
+ * меняется повторно после завершения транзакции (см. {@code FilmDbStorage.touchPopularFilms}).
+ */
+@Component
+public class JsonResponseCache {
+    private final ObjectMapper objectMapper;
+    private final EntityCache<String, byte[]> bodies;
+
+    public JsonResponseCache(ObjectMapper objectMapper,
+                             @Value("${filmorate.cache.responses.max-bytes:8000000}") long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.bodies = new EntityCache<>(maxBytes, body -> body.length, body -> body);
+    }
+
+    /**
+     * Ответ с телом {@code payload}, сериализованным для версии {@code version} ресурса {@code key}.
+     * {@code payload} вызывается, только если такого тела ещё нет в кэше; версию нужно получить до него.
+     */
+    public ResponseEntity<byte[]> json(String key, String version, Supplier<?> payload) {
+        String cacheKey = key + "@" + version;
+        byte[] body = bodies.get(cacheKey);
+        if (body == null) {
+            long stamp = bodies.stamp();
+            try {
+                body = objectMapper.writeValueAsBytes(payload.get());
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+            bodies.put(cacheKey, body, stamp);
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    public EntityCache.Stats getStats() {
+        return bodies.getStats();
+    }
+}
@@ -2,28 +2,36 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.MpaRating;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
 
-import java.util.List;
-
 @Slf4j
 @RestController
 @RequestMapping("/mpa")
 @RequiredArgsConstructor
 public class MpaController {
     private final FilmDbStorage filmDbStorage;
+    private final JsonResponseCache responseCache;
 
     @GetMapping
-    public List<MpaRating> getAllMpa() {
-        log.info("Получен запрос на получение всех MPA рейтингов");
-        return filmDbStorage.getAllMpaRatings();
+    public ResponseEntity<byte[]> getAllMpa(WebRequest request) {
+        log.debug("Получен запрос на получение всех MPA рейтингов");
+        String version = filmDbStorage.getReferenceDataVersion();
+        if (request.checkNotModified("reference-" + version)) {
+            return null;
+        }
+        return responseCache.json("mpa", version, filmDbStorage::getAllMpaRatings);
     }
 
     @GetMapping("/{id}")
-    public MpaRating getMpaById(@PathVariable Integer id) {
-        log.info("Получен запрос на получение MPA рейтинга с id: {}", id);
+    public MpaRating getMpaById(@PathVariable Integer id, WebRequest request) {
+        log.debug("Получен запрос на получение MPA рейтинга с id: {}", id);
+        if (request.checkNotModified("reference-" + filmDbStorage.getReferenceDataVersion())) {
+            return null;
+        }
         return filmDbStorage.getMpaRatingById(id);
     }
 }
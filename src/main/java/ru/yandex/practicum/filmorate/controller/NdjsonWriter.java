@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Пишет объекты в ответ в формате NDJSON (по одному JSON-документу на строку)
+ * по мере их чтения из хранилища, не собирая всю коллекцию в памяти.
+ */
+@Component
+@RequiredArgsConstructor
+public class NdjsonWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+
+    public <T> StreamingResponseBody stream(Consumer<Consumer<T>> source) {
+        return out -> {
+            BufferedOutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+            source.accept(item -> writeLine(buffered, item));
+            buffered.flush();
+        };
+    }
+
+    private void writeLine(OutputStream out, Object item) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(item));
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -4,8 +4,14 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.View;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
 import ru.yandex.practicum.filmorate.service.user.UserService;
 
 import java.util.Collection;
@@ -17,57 +23,86 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final FilmService filmService;
+    private final NdjsonWriter ndjsonWriter;
     private static final String FRIENDS_PATH = "/{id}/friends/{friendId}";
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public User createUser(@Valid @RequestBody User user) {
-        log.info("Получен запрос на создание пользователя: {}", user);
+        log.debug("Получен запрос на создание пользователя: {}", user);
         return userService.createUser(user);
     }
 
     @GetMapping
-    public Collection<User> getAllUsers() {
-        log.info("Получен запрос на получение всех пользователей");
-        return userService.getAllUsers();
+    public Collection<User> getAllUsers(@RequestParam(required = false) Long afterId,
+                                        @RequestParam(required = false) Integer limit) {
+        if (afterId == null && limit == null) {
+            log.debug("Получен запрос на получение всех пользователей");
+            return userService.getAllUsers();
+        }
+        log.debug("Получен запрос на получение пользователей после id {}, limit {}", afterId, limit);
+        return userService.getUsers(afterId, limit);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamUsers() {
+        log.debug("Получен запрос на потоковую выгрузку всех пользователей");
+        return ndjsonWriter.stream(userService::streamUsers);
     }
 
     @PutMapping
     public User updateUser(@Valid @RequestBody User user) {
-        log.info("Получен запрос на обновление пользователя: {}", user);
+        log.debug("Получен запрос на обновление пользователя: {}", user);
         return userService.updateUser(user);
     }
 
     @GetMapping("/{id}")
-    public User getUserById(@PathVariable Long id) {
-        log.info("Получен запрос на получение пользователя с id: {}", id);
+    public User getUserById(@PathVariable Long id, WebRequest request) {
+        log.debug("Получен запрос на получение пользователя с id: {}", id);
+        if (request.checkNotModified("user-" + id + "-" + userService.getUserVersion(id))) {
+            return null;
+        }
         return userService.getUserById(id);
     }
 
     @PutMapping(FRIENDS_PATH)
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void addFriend(@PathVariable Long id, @PathVariable Long friendId) {
-        log.info("Получен запрос на добавление пользователя с id {} в друзья к пользователю с id {}", friendId, id);
+        log.debug("Получен запрос на добавление пользователя с id {} в друзья к пользователю с id {}", friendId, id);
         userService.addFriend(id, friendId);
     }
 
     @DeleteMapping(FRIENDS_PATH)
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteFriend(@PathVariable Long id, @PathVariable Long friendId) {
-        log.info("Получен запрос на удаление пользователя с id {} из друзей пользователя с id {}", friendId, id);
+        log.debug("Получен запрос на удаление пользователя с id {} из друзей пользователя с id {}", friendId, id);
         userService.deleteFriend(id, friendId);
     }
 
     @GetMapping("/{id}/friends")
-    public List<User> getFriends(@PathVariable Long id) {
-        log.info("Получен запрос на получение списка друзей пользователя с id {}", id);
-        userService.getUserById(id);
-        return userService.getFriends(id);
+    public List<User> getFriends(@PathVariable Long id, @RequestParam(required = false) String view) {
+        log.debug("Получен запрос на получение списка друзей пользователя с id {}, представление {}", id, view);
+        return userService.getFriends(id, View.of(view));
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
     public List<User> getCommonFriends(@PathVariable Long id, @PathVariable Long otherId) {
-        log.info("Получен запрос на получение списка общих друзей пользователя с id {} и пользователя с id {}", id, otherId);
+        log.debug("Получен запрос на получение списка общих друзей пользователя с id {} и пользователя с id {}", id, otherId);
         return userService.getCommonFriends(id, otherId);
     }
+
+    @GetMapping("/{id}/recommendations/friends")
+    public List<User> getFriendRecommendations(@PathVariable Long id,
+                                               @RequestParam(required = false) Integer limit) {
+        log.debug("Получен запрос на рекомендации друзей для пользователя с id {}, limit {}", id, limit);
+        return userService.getFriendRecommendations(id, limit);
+    }
+
+    @GetMapping("/{id}/recommendations/films")
+    public List<Film> getFilmRecommendations(@PathVariable Long id,
+                                             @RequestParam(required = false) Integer limit) {
+        log.debug("Получен запрос на рекомендации фильмов для пользователя с id {}, limit {}", id, limit);
+        return filmService.getRecommendedFilms(id, limit);
+    }
 }
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.exception;
+
+/**
+ * Временная перегрузка: запрос можно повторить не раньше чем через {@code retryAfterSeconds} секунд.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public ServiceUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.controller.JsonResponseCache;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.function.Supplier;
+
+/**
+ * Публикует статистику кэшей хранилищ: попадания, промахи, вытеснения, размер и долю попаданий
+ * с тегом {@code cache}.
+ */
+@Component
+public class CacheMetrics implements MeterBinder {
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final JsonResponseCache responseCache;
+
+    public CacheMetrics(FilmDbStorage filmStorage, UserDbStorage userStorage, JsonResponseCache responseCache) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.responseCache = responseCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bind(registry, "films", filmStorage::getFilmCacheStats);
+        bind(registry, "users", userStorage::getUserCacheStats);
+        bind(registry, "friend-recommendations", userStorage::getFriendRecommendationCacheStats);
+        bind(registry, "responses", responseCache::getStats);
+    }
+
+    private static void bind(MeterRegistry registry, String cache, Supplier<EntityCache.Stats> stats) {
+        FunctionCounter.builder("filmorate.cache.hits", stats, s -> s.get().hits())
+                .tag("cache", cache)
+                .register(registry);
+        FunctionCounter.builder("filmorate.cache.misses", stats, s -> s.get().misses())
+                .tag("cache", cache)
+                .register(registry);
+        FunctionCounter.builder("filmorate.cache.evictions", stats, s -> s.get().evictions())
+                .tag("cache", cache)
+                .register(registry);
+        Gauge.builder("filmorate.cache.size", stats, s -> s.get().size())
+                .tag("cache", cache)
+                .register(registry);
+        Gauge.builder("filmorate.cache.weight", stats, s -> s.get().weight())
+                .tag("cache", cache)
+                .register(registry);
+        Gauge.builder("filmorate.cache.hit.ratio", stats, s -> {
+                    EntityCache.Stats current = s.get();
+                    long requests = current.hits() + current.misses();
+                    return requests == 0 ? Double.NaN : (double) current.hits() / requests;
+                })
+                .tag("cache", cache)
+                .register(registry);
+    }
+}
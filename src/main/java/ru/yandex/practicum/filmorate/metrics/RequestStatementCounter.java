@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+/**
+ * Счётчик SQL-запросов, выполненных в рамках текущего HTTP-запроса. Запросы из фоновых
+ * потоков (например, сброс отложенных лайков) не учитываются: для них счётчик не запущен.
+ */
+public final class RequestStatementCounter {
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<>();
+
+    private RequestStatementCounter() {
+    }
+
+    public static void start() {
+        COUNT.set(new int[1]);
+    }
+
+    /**
+     * Останавливает счётчик и возвращает число запросов с момента {@link #start()}.
+     */
+    public static int stop() {
+        int[] count = COUNT.get();
+        COUNT.remove();
+        return count != null ? count[0] : 0;
+    }
+
+    static void increment() {
+        int[] count = COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Замеряет время каждого вызова методов {@code FilmStorage} и {@code UserStorage} таймером
+ * {@code filmorate.storage.calls} с тегами хранилища, метода и класса исключения.
+ * Вызовы внутри самого хранилища (через {@code this}) не замеряются.
+ */
+@Aspect
+@Component
+public class StorageMetricsAspect {
+    private final MeterRegistry registry;
+
+    public StorageMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("execution(* ru.yandex.practicum.filmorate.storage.film.FilmStorage.*(..))"
+            + " || execution(* ru.yandex.practicum.filmorate.storage.user.UserStorage.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        String exception = "none";
+        long started = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            Timer.builder("filmorate.storage.calls")
+                    .description("Время вызова методов хранилищ")
+                    .tag("storage", joinPoint.getSignature().getDeclaringType().getSimpleName())
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .register(registry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Друзья пользователя: отсортированный массив id и параллельный массив статусов дружбы
+ * (порядковый номер {@link FriendshipStatus} в байте) — около 9 байт на друга вместо
+ * упакованного {@link Long}, узла {@link java.util.HashMap} и ссылки на статус. Поиск — двоичный,
+ * добавление по возрастанию id — амортизированно O(1). В JSON пишется обычным объектом
+ * «id → статус». Значения {@code null} не допускаются. Не потокобезопасно.
+ */
+public class CompactFriendMap extends AbstractMap<Long, FriendshipStatus> {
+    private static final long[] NO_IDS = new long[0];
+    private static final byte[] NO_STATUSES = new byte[0];
+    private static final FriendshipStatus[] STATUSES = FriendshipStatus.values();
+
+    private long[] ids = NO_IDS;
+    private byte[] statuses = NO_STATUSES;
+    private int size;
+
+    public CompactFriendMap() {
+    }
+
+    public CompactFriendMap(Map<Long, FriendshipStatus> friends) {
+        if (friends instanceof CompactFriendMap compact) {
+            this.ids = Arrays.copyOf(compact.ids, compact.size);
+            this.statuses = Arrays.copyOf(compact.statuses, compact.size);
+            this.size = compact.size;
+        } else {
+            putAll(friends);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Long id && indexOf(id) >= 0;
+    }
+
+    @Override
+    public FriendshipStatus get(Object key) {
+        if (!(key instanceof Long id)) {
+            return null;
+        }
+        int position = indexOf(id);
+        return position >= 0 ? STATUSES[statuses[position]] : null;
+    }
+
+    @Override
+    public FriendshipStatus put(Long key, FriendshipStatus status) {
+        long id = key;
+        byte ordinal = (byte) Objects.requireNonNull(status, "Статус дружбы не может быть null").ordinal();
+        int position = size > 0 && ids[size - 1] < id ? -size - 1 : indexOf(id);
+        if (position >= 0) {
+            FriendshipStatus previous = STATUSES[statuses[position]];
+            statuses[position] = ordinal;
+            return previous;
+        }
+        int insertAt = -position - 1;
+        if (size == ids.length) {
+            int capacity = Math.max(4, size + (size >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+        }
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        System.arraycopy(statuses, insertAt, statuses, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        statuses[insertAt] = ordinal;
+        size++;
+        return null;
+    }
+
+    @Override
+    public FriendshipStatus remove(Object key) {
+        if (!(key instanceof Long id)) {
+            return null;
+        }
+        int position = indexOf(id);
+        if (position < 0) {
+            return null;
+        }
+        FriendshipStatus previous = STATUSES[statuses[position]];
+        removeAt(position);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        ids = NO_IDS;
+        statuses = NO_STATUSES;
+        size = 0;
+    }
+
+    @Override
+    public Set<Entry<Long, FriendshipStatus>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Entry<Long, FriendshipStatus>> iterator() {
+                return new Iterator<>() {
+                    private int next;
+                    private boolean removable;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<Long, FriendshipStatus> next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        removable = true;
+                        int position = next++;
+                        return new SimpleImmutableEntry<>(ids[position], STATUSES[statuses[position]]);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (!removable) {
+                            throw new IllegalStateException();
+                        }
+                        removeAt(--next);
+                        removable = false;
+                    }
+                };
+            }
+        };
+    }
+
+    private int indexOf(long id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+
+    private void removeAt(int position) {
+        System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+        System.arraycopy(statuses, position + 1, statuses, position, size - position - 1);
+        size--;
+    }
+}
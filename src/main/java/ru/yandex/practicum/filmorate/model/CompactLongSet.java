@@ -0,0 +1,138 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Множество {@code long} на отсортированном массиве без упаковки в {@link Long}: 8 байт на элемент
+ * вместо нескольких десятков у {@link java.util.HashSet}. Поиск — двоичный, вставка в конец
+ * (элементы добавляются по возрастанию, как их отдаёт база) — амортизированно O(1), вставка
+ * в середину — O(n). Итерация идёт по возрастанию; в JSON множество пишется обычным массивом.
+ * Не потокобезопасно.
+ */
+public class CompactLongSet extends AbstractSet<Long> {
+    private static final long[] EMPTY = new long[0];
+
+    private long[] values = EMPTY;
+    private int size;
+
+    public CompactLongSet() {
+    }
+
+    public CompactLongSet(Collection<Long> values) {
+        if (values instanceof CompactLongSet compact) {
+            this.values = Arrays.copyOf(compact.values, compact.size);
+            this.size = compact.size;
+        } else {
+            values.forEach(this::add);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(long value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return value instanceof Long longValue && contains(longValue.longValue());
+    }
+
+    public boolean add(long value) {
+        if (size > 0 && values[size - 1] < value) {
+            ensureCapacity();
+            values[size++] = value;
+            return true;
+        }
+        int position = Arrays.binarySearch(values, 0, size, value);
+        if (position >= 0) {
+            return false;
+        }
+        int insertAt = -position - 1;
+        ensureCapacity();
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        values[insertAt] = value;
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean add(Long value) {
+        return add(value.longValue());
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        if (!(value instanceof Long longValue)) {
+            return false;
+        }
+        int position = Arrays.binarySearch(values, 0, size, longValue);
+        if (position < 0) {
+            return false;
+        }
+        removeAt(position);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        values = EMPTY;
+        size = 0;
+    }
+
+    /**
+     * Копия элементов в порядке возрастания.
+     */
+    public long[] toLongArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new Iterator<>() {
+            private int next;
+            private boolean removable;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Long next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                removable = true;
+                return values[next++];
+            }
+
+            @Override
+            public void remove() {
+                if (!removable) {
+                    throw new IllegalStateException();
+                }
+                removeAt(--next);
+                removable = false;
+            }
+        };
+    }
+
+    private void ensureCapacity() {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+        }
+    }
+
+    private void removeAt(int position) {
+        System.arraycopy(values, position + 1, values, position, size - position - 1);
+        size--;
+    }
+}
@@ -1,5 +1,8 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import jakarta.validation.constraints.*;
 import lombok.AccessLevel;
 import lombok.Data;
@@ -29,6 +32,15 @@ public class Film {
 
     MpaRating mpa;
     Set<Genre> genres = new HashSet<>();
-    Set<Long> likes = new HashSet<>();
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonDeserialize(as = CompactLongSet.class)
+    Set<Long> likes = new CompactLongSet();
+
+    /**
+     * Число лайков в сокращённом представлении ({@link View#SUMMARY}), где {@link #likes} не загружается.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    Integer likesCount;
 
 }
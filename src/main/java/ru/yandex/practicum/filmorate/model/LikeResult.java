@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class LikeResult {
+    Long filmId;
+    Long userId;
+    Status status;
+
+    public enum Status {
+        ADDED,
+        ALREADY_EXISTS,
+        FILM_NOT_FOUND,
+        USER_NOT_FOUND
+    }
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.time.Duration;
+
+/**
+ * Окно, за которое считаются лайки в списке трендовых фильмов.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum TrendingWindow {
+    HOUR("1h", Duration.ofHours(1)),
+    DAY("24h", Duration.ofDays(1)),
+    WEEK("7d", Duration.ofDays(7));
+
+    private final String value;
+    private final Duration duration;
+
+    /**
+     * Разбирает параметр запроса {@code window}; {@code null} означает последние сутки.
+     */
+    public static TrendingWindow of(String value) {
+        if (value == null) {
+            return DAY;
+        }
+        for (TrendingWindow window : values()) {
+            if (window.value.equals(value.trim())) {
+                return window;
+            }
+        }
+        throw new ValidationException("Неизвестное окно трендов: " + value.trim());
+    }
+}
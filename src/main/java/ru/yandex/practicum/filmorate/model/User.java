@@ -1,12 +1,14 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import jakarta.validation.constraints.*;
 import lombok.AccessLevel;
 import lombok.Data;
 import lombok.experimental.FieldDefaults;
 
 import java.time.LocalDate;
-import java.util.HashMap;
 import java.util.Map;
 
 @FieldDefaults(level = AccessLevel.PRIVATE)
@@ -28,7 +30,16 @@ public class User {
     @PastOrPresent(message = "Дата рождения не может быть в будущем")
     LocalDate birthday;
 
-    private Map<Long, FriendshipStatus> friends = new HashMap<>();
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonDeserialize(as = CompactFriendMap.class)
+    private Map<Long, FriendshipStatus> friends = new CompactFriendMap();
+
+    /**
+     * Число друзей в сокращённом представлении ({@link View#SUMMARY}), где {@link #friends} не загружается.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    Integer friendsCount;
 
     public String getName() {
         if (name == null || name.isBlank()) {
@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+/**
+ * Представление сущностей в списках: {@code FULL} — с id лайков фильма и друзей пользователя,
+ * {@code SUMMARY} — только с их количеством ({@code likesCount}/{@code friendsCount}).
+ */
+public enum View {
+    FULL,
+    SUMMARY;
+
+    /**
+     * Разбирает параметр запроса {@code view}; {@code null} означает полное представление.
+     */
+    public static View of(String value) {
+        if (value == null) {
+            return FULL;
+        }
+        return switch (value.trim()) {
+            case "full" -> FULL;
+            case "summary" -> SUMMARY;
+            default -> throw new ValidationException("Неизвестное представление: " + value.trim());
+        };
+    }
+}
@@ -3,12 +3,25 @@ package ru.yandex.practicum.filmorate.service.film;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.LikeResult;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
+import ru.yandex.practicum.filmorate.model.View;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -17,18 +30,63 @@ public class FilmService {
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_BATCH_SIZE = 500;
+    private static final int MAX_BULK_LIKES = 10_000;
+    private static final int DEFAULT_RECOMMENDATIONS = 10;
+    private static final int MAX_RECOMMENDATIONS = 100;
+    private static final int MAX_TRENDING_FILMS = 100;
+
     public void addLike(Long filmId, Long userId) {
-        filmStorage.getFilmById(filmId);
-        userStorage.getUserById(userId);
+        checkFilmAndUserExist(filmId, userId);
 
         filmStorage.addLike(filmId, userId);
 
         log.info("Пользователь с id {} поставил лайк фильму с id {}", userId, filmId);
     }
 
+    public List<LikeResult> addLikes(List<Like> likes) {
+        if (likes.size() > MAX_BULK_LIKES) {
+            throw new ValidationException("За один запрос можно добавить не больше " + MAX_BULK_LIKES + " лайков");
+        }
+
+        Set<Long> existingFilms = filmStorage.findExistingFilmIds(likes.stream()
+                .map(Like::getFilmId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+        Set<Long> existingUsers = userStorage.findExistingUserIds(likes.stream()
+                .map(Like::getUserId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+
+        List<LikeResult> results = new ArrayList<>(likes.size());
+        List<Like> validLikes = new ArrayList<>();
+        List<LikeResult> validResults = new ArrayList<>();
+        for (Like like : likes) {
+            LikeResult result = new LikeResult(like.getFilmId(), like.getUserId(), null);
+            if (!existingFilms.contains(like.getFilmId())) {
+                result.setStatus(LikeResult.Status.FILM_NOT_FOUND);
+            } else if (!existingUsers.contains(like.getUserId())) {
+                result.setStatus(LikeResult.Status.USER_NOT_FOUND);
+            } else {
+                validLikes.add(like);
+                validResults.add(result);
+            }
+            results.add(result);
+        }
+
+        boolean[] added = filmStorage.addLikes(validLikes);
+        for (int i = 0; i < added.length; i++) {
+            validResults.get(i).setStatus(added[i] ? LikeResult.Status.ADDED : LikeResult.Status.ALREADY_EXISTS);
+        }
+
+        log.info("Обработан пакет из {} лайков", likes.size());
+        return results;
+    }
+
     public void deleteLike(Long filmId, Long userId) {
-        filmStorage.getFilmById(filmId);
-        userStorage.getUserById(userId);
+        checkFilmAndUserExist(filmId, userId);
 
         filmStorage.deleteLike(filmId, userId);
 
@@ -40,23 +98,117 @@ public class FilmService {
         return filmStorage.getPopularFilms(count);
     }
 
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        return getPopularFilms(count, genreId, year, View.FULL);
+    }
+
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year, View view) {
+        if (genreId == null && year == null && view == View.FULL) {
+            return getPopularFilms(count);
+        }
+        log.debug("Получение {} популярных фильмов с жанром {} и годом выпуска {}, представление {}",
+                count, genreId, year, view);
+        return filmStorage.getPopularFilms(count, genreId, year, view);
+    }
+
+    public List<Film> getTrendingFilms(int count, TrendingWindow window, View view) {
+        if (count < 1 || count > MAX_TRENDING_FILMS) {
+            throw new ValidationException("Количество трендовых фильмов должно быть от 1 до " + MAX_TRENDING_FILMS);
+        }
+        log.debug("Получение {} трендовых фильмов за окно {}, представление {}", count, window.getValue(), view);
+        return filmStorage.getTrendingFilms(count, window, view);
+    }
+
+    public List<Film> searchFilms(String query, String by, Integer limit) {
+        if (query == null || FilmSearchIndex.tokenize(query).isEmpty()) {
+            throw new ValidationException("Поисковый запрос должен содержать хотя бы одно слово");
+        }
+        Set<FilmSearchIndex.Field> fields = EnumSet.noneOf(FilmSearchIndex.Field.class);
+        for (String field : (by != null ? by : "title").split(",")) {
+            switch (field.trim()) {
+                case "title" -> fields.add(FilmSearchIndex.Field.TITLE);
+                case "description" -> fields.add(FilmSearchIndex.Field.DESCRIPTION);
+                default -> throw new ValidationException("Неизвестное поле поиска: " + field.trim());
+            }
+        }
+        log.debug("Поиск фильмов по запросу '{}' в полях {}", query, fields);
+        return filmStorage.searchFilms(query, fields, checkPageLimit(limit));
+    }
+
+    public List<Film> getRecommendedFilms(Long userId, Integer limit) {
+        if (!userStorage.userExists(userId)) {
+            throw new NotFoundException("Пользователь с id " + userId + " не найден");
+        }
+        int count = limit != null ? limit : DEFAULT_RECOMMENDATIONS;
+        if (count < 1 || count > MAX_RECOMMENDATIONS) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + MAX_RECOMMENDATIONS);
+        }
+        log.debug("Получение {} рекомендаций фильмов для пользователя {}", count, userId);
+        return filmStorage.getRecommendedFilms(userId, count);
+    }
+
     public Film createFilm(Film film) {
-        log.info("Создание фильма: {}", film);
+        log.debug("Создание фильма: {}", film);
         return filmStorage.addFilm(film);
     }
 
     public Film updateFilm(Film film) {
-        log.info("Обновление фильма: {}", film);
+        log.debug("Обновление фильма: {}", film);
         return filmStorage.updateFilm(film);
     }
 
     public Collection<Film> getAllFilms() {
-        log.info("Получение всех фильмов");
-        return filmStorage.getAllFilms();
+        return getAllFilms(View.FULL);
+    }
+
+    public Collection<Film> getAllFilms(View view) {
+        log.debug("Получение всех фильмов, представление {}", view);
+        return filmStorage.getAllFilms(view);
+    }
+
+    public List<Film> getFilms(Long afterId, Integer limit) {
+        return getFilms(afterId, limit, View.FULL);
+    }
+
+    public List<Film> getFilms(Long afterId, Integer limit, View view) {
+        log.debug("Получение страницы фильмов после id {} размером {}, представление {}", afterId, limit, view);
+        return filmStorage.getFilms(afterId != null ? afterId : 0, checkPageLimit(limit), view);
+    }
+
+    public void streamFilms(Consumer<Film> action) {
+        log.debug("Потоковая выгрузка всех фильмов");
+        filmStorage.forEachFilm(STREAM_BATCH_SIZE, action);
     }
 
     public Film getFilmById(Long id) {
-        log.info("Получение фильма по id: {}", id);
+        log.debug("Получение фильма по id: {}", id);
         return filmStorage.getFilmById(id);
     }
-}
\ No newline at end of file
+
+    public long getFilmVersion(Long id) {
+        return filmStorage.getFilmVersion(id);
+    }
+
+    public String getPopularFilmsVersion() {
+        return filmStorage.getPopularFilmsVersion();
+    }
+
+    private int checkPageLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+
+    private void checkFilmAndUserExist(Long filmId, Long userId) {
+        if (!filmStorage.filmExists(filmId)) {
+            throw new NotFoundException("Фильм с id " + filmId + " не найден");
+        }
+        if (!userStorage.userExists(userId)) {
+            throw new NotFoundException("Пользователь с id " + userId + " не найден");
+        }
+    }
+}
@@ -3,13 +3,16 @@ package ru.yandex.practicum.filmorate.service.user;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.FriendshipStatus;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.View;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
@@ -18,36 +21,56 @@ public class UserService {
 
     private final UserStorage userStorage;
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_BATCH_SIZE = 500;
+    private static final int DEFAULT_RECOMMENDATIONS = 10;
+    private static final int MAX_RECOMMENDATIONS = 100;
+
     public User createUser(User user) {
-        log.info("Создание пользователя: {}", user);
+        log.debug("Создание пользователя: {}", user);
         return userStorage.addUser(user);
     }
 
     public User updateUser(User user) {
-        log.info("Обновление пользователя: {}", user);
-        getUserById(user.getId());
+        log.debug("Обновление пользователя: {}", user);
+        checkUserExists(user.getId());
         return userStorage.updateUser(user);
     }
 
     public Collection<User> getAllUsers() {
-        log.info("Получение всех пользователей");
+        log.debug("Получение всех пользователей");
         return userStorage.getAllUsers();
     }
 
+    public List<User> getUsers(Long afterId, Integer limit) {
+        log.debug("Получение страницы пользователей после id {} размером {}", afterId, limit);
+        return userStorage.getUsers(afterId != null ? afterId : 0, checkPageLimit(limit));
+    }
+
+    public void streamUsers(Consumer<User> action) {
+        log.debug("Потоковая выгрузка всех пользователей");
+        userStorage.forEachUser(STREAM_BATCH_SIZE, action);
+    }
+
     public User getUserById(long id) {
-        log.info("Получение пользователя по id: {}", id);
+        log.debug("Получение пользователя по id: {}", id);
         return userStorage.getUserById(id);
     }
 
+    public long getUserVersion(long id) {
+        return userStorage.getUserVersion(id);
+    }
+
     public void addFriend(Long userId, Long friendId) {
         if (userId.equals(friendId)) {
             throw new ValidationException("Пользователь не может добавить самого себя в друзья");
         }
 
-        User user = getUserById(userId);
-        User friend = getUserById(friendId);
+        checkUserExists(userId);
+        checkUserExists(friendId);
 
-        if (friend.getFriends().containsKey(userId)) {
+        if (userStorage.hasFriend(friendId, userId)) {
             userStorage.addFriend(userId, friendId, FriendshipStatus.CONFIRMED);
             userStorage.addFriend(friendId, userId, FriendshipStatus.CONFIRMED);
                 log.info("Дружба между {} и {} подтверждена", userId, friendId);
@@ -60,8 +83,8 @@ public class UserService {
     }
 
     public void deleteFriend(Long userId, Long friendId) {
-        getUserById(userId);
-        getUserById(friendId);
+        checkUserExists(userId);
+        checkUserExists(friendId);
 
         userStorage.deleteFriend(userId, friendId);
 
@@ -69,10 +92,41 @@ public class UserService {
     }
 
     public List<User> getFriends(Long userId) {
-        return userStorage.getFriends(userId);
+        return getFriends(userId, View.FULL);
+    }
+
+    public List<User> getFriends(Long userId, View view) {
+        checkUserExists(userId);
+        return userStorage.getFriends(userId, view);
     }
 
     public List<User> getCommonFriends(Long userId, Long otherId) {
         return userStorage.getCommonFriends(userId, otherId);
     }
+
+    public List<User> getFriendRecommendations(Long userId, Integer limit) {
+        checkUserExists(userId);
+        int count = limit != null ? limit : DEFAULT_RECOMMENDATIONS;
+        if (count < 1 || count > MAX_RECOMMENDATIONS) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " + MAX_RECOMMENDATIONS);
+        }
+        log.debug("Получение {} рекомендаций друзей для пользователя {}", count, userId);
+        return userStorage.getFriendRecommendations(userId, count);
+    }
+
+    private void checkUserExists(Long id) {
+        if (!userStorage.userExists(id)) {
+            throw new NotFoundException("Пользователь с id " + id + " не найден");
+        }
+    }
+
+    private int checkPageLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
 }
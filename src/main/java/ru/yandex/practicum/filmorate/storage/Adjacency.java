@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Построение списков смежности вида «id → отсортированный массив связанных id»
+ * для in-memory индексов графа дружбы и матрицы лайков.
+ */
+public final class Adjacency {
+
+    private Adjacency() {
+    }
+
+    /**
+     * Читает пары (key, value) из результата запроса, отсортированного по {@code keyColumn}
+     * и затем по {@code valueColumn}, без промежуточных коллекций с упакованными значениями.
+     */
+    public static Map<Long, long[]> read(ResultSet rs, String keyColumn, String valueColumn) throws SQLException {
+        Map<Long, long[]> result = new HashMap<>();
+        long currentKey = -1;
+        long[] buffer = new long[16];
+        int size = 0;
+        while (rs.next()) {
+            long key = rs.getLong(keyColumn);
+            if (key != currentKey) {
+                if (size > 0) {
+                    result.put(currentKey, Arrays.copyOf(buffer, size));
+                }
+                currentKey = key;
+                size = 0;
+            }
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = rs.getLong(valueColumn);
+        }
+        if (size > 0) {
+            result.put(currentKey, Arrays.copyOf(buffer, size));
+        }
+        return result;
+    }
+
+    /**
+     * Обращает направление связей: из «a → [b...]» строит «b → [a...]».
+     */
+    public static Map<Long, long[]> invert(Map<Long, long[]> adjacency) {
+        Map<Long, Integer> counts = new HashMap<>();
+        adjacency.values().forEach(targets -> {
+            for (long target : targets) {
+                counts.merge(target, 1, Integer::sum);
+            }
+        });
+
+        Map<Long, long[]> inverted = new HashMap<>(counts.size() * 2);
+        counts.forEach((target, count) -> inverted.put(target, new long[count]));
+        Map<Long, Integer> filled = new HashMap<>(counts.size() * 2);
+        adjacency.forEach((source, targets) -> {
+            for (long target : targets) {
+                inverted.get(target)[filled.merge(target, 1, Integer::sum) - 1] = source;
+            }
+        });
+        inverted.values().forEach(Arrays::sort);
+        return inverted;
+    }
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.storage;
+
+/**
+ * Запись журнала изменений {@code events}.
+ *
+ * @param subjectId фильм для событий лайков и фильмов, пользователь для событий дружбы
+ * @param objectId  пользователь для событий лайков, друг для событий дружбы, {@code null} для событий фильмов
+ */
+public record ChangeEvent(long id, Type type, long subjectId, Long objectId) {
+
+    public enum Type {
+        /**
+         * Добавлен лайк фильму {@code subjectId} от пользователя {@code objectId}.
+         */
+        LIKE_ADDED,
+        LIKE_REMOVED,
+        /**
+         * Пользователь {@code subjectId} добавил в друзья {@code objectId}.
+         */
+        FRIEND_ADDED,
+        FRIEND_REMOVED,
+        /**
+         * Фильм добавлен или удалён, у него изменились дата выпуска или жанры.
+         */
+        FILM_SAVED
+    }
+}
@@ -0,0 +1,114 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Ограниченный LRU-кэш снимков сущностей хранилища.
+ *
+ * <p>Размер ограничен суммарным весом записей (например, числом лайков или друзей),
+ * а не их количеством, чтобы несколько «тяжёлых» сущностей не вытесняли кэш из памяти.
+ * Кэш хранит собственные копии объектов и отдаёт копии наружу, поэтому изменения
+ * возвращённых объектов не попадают в кэш.
+ *
+ * <p>Чтобы значение, прочитанное из базы до конкурентной инвалидации, не попало в кэш,
+ * загрузка выполняется в паре {@link #stamp()} / {@link #put(Object, Object, long)}.
+ */
+public class EntityCache<K, V> {
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final UnaryOperator<V> copier;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long weight;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public EntityCache(long maxWeight, ToLongFunction<V> weigher, UnaryOperator<V> copier) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.copier = copier;
+    }
+
+    /**
+     * @return копия закэшированного значения или {@code null}, если значения нет
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copier.apply(entry.value());
+    }
+
+    public synchronized boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Метка, которую нужно получить до чтения значения из базы и передать в {@link #put}.
+     */
+    public synchronized long stamp() {
+        return generation;
+    }
+
+    /**
+     * Кладёт значение в кэш, если с момента получения {@code stamp} не было инвалидаций.
+     */
+    public synchronized void put(K key, V value, long stamp) {
+        if (stamp != generation) {
+            return;
+        }
+        long valueWeight = weigher.applyAsLong(value);
+        if (valueWeight > maxWeight) {
+            return;
+        }
+
+        Entry<V> previous = entries.put(key, new Entry<>(copier.apply(value), valueWeight));
+        if (previous != null) {
+            weight -= previous.weight();
+        }
+        weight += valueWeight;
+        evictIfNeeded();
+    }
+
+    public synchronized void invalidate(K key) {
+        generation++;
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.weight();
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, entries.size(), weight);
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            weight -= iterator.next().getValue().weight();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    public record Stats(long hits, long misses, long evictions, int size, long weight) {
+    }
+
+    private record Entry<V>(V value, long weight) {
+    }
+}
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Чтение журнала изменений {@code events}, который пишет {@link EventLogTrigger}, и контрольные
+ * точки его потребителей в {@code projection_checkpoints}: id события, до которого (не включая)
+ * потребитель уже учёл журнал. События до самой ранней контрольной точки можно удалять.
+ */
+@Component
+@RequiredArgsConstructor
+public class EventLog {
+    private static final String NEXT_ID_SQL =
+            "SELECT base_value FROM information_schema.sequences WHERE sequence_name = 'CHANGE_COUNTER'";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Id, который получит следующее событие. Продвигается сразу, ещё до фиксации транзакции.
+     */
+    public long nextEventId() {
+        Long next = jdbcTemplate.queryForObject(NEXT_ID_SQL, Long.class);
+        return next != null ? next : 0;
+    }
+
+    /**
+     * Передаёт в {@code action} по порядку id события выбранных типов, начиная с {@code fromEventId}.
+     *
+     * @return число переданных событий
+     */
+    public int forEach(long fromEventId, Collection<ChangeEvent.Type> types, Consumer<ChangeEvent> action) {
+        String sql = "SELECT id, type, subject_id, object_id FROM events WHERE id >= ? AND type IN ("
+                + String.join(",", Collections.nCopies(types.size(), "?")) + ") ORDER BY id";
+        Object[] args = new Object[types.size() + 1];
+        args[0] = fromEventId;
+        List<ChangeEvent.Type> typeList = List.copyOf(types);
+        for (int i = 0; i < typeList.size(); i++) {
+            args[i + 1] = typeList.get(i).name();
+        }
+        int[] count = new int[1];
+        jdbcTemplate.query(sql, rs -> {
+            action.accept(new ChangeEvent(rs.getLong("id"), ChangeEvent.Type.valueOf(rs.getString("type")),
+                    rs.getLong("subject_id"), rs.getObject("object_id", Long.class)));
+            count[0]++;
+        }, args);
+        return count[0];
+    }
+
+    /**
+     * Контрольная точка потребителя или {@code 0}, если он ещё ни разу её не сохранял.
+     */
+    public long getCheckpoint(String consumer) {
+        List<Long> checkpoint = jdbcTemplate.queryForList(
+                "SELECT event_id FROM projection_checkpoints WHERE name = ?", Long.class, consumer);
+        return checkpoint.isEmpty() ? 0 : checkpoint.get(0);
+    }
+
+    public void saveCheckpoint(String consumer, long eventId) {
+        jdbcTemplate.update("MERGE INTO projection_checkpoints (name, event_id) KEY (name) VALUES (?, ?)",
+                consumer, eventId);
+    }
+
+    /**
+     * Удаляет события, которые учтены всеми потребителями.
+     *
+     * @return число удалённых событий
+     */
+    public int prune() {
+        return jdbcTemplate.update("DELETE FROM events WHERE id < (SELECT MIN(event_id) FROM projection_checkpoints)");
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Objects;
+
+/**
+ * Триггер H2, который записывает в журнал {@code events} изменения таблиц, из которых строятся
+ * in-memory индексы: лайки, дружбу, а также добавление фильмов, смену их даты выпуска и жанров.
+ * Запись идёт в той же транзакции, что и изменение, поэтому откаченное изменение в журнал не попадает.
+ *
+ * <p>Id событий берутся из последовательности {@code change_counter}: последовательности в H2
+ * не транзакционны, поэтому её значение продвигается сразу и не создаёт блокировок между
+ * пишущими транзакциями. По нему {@link ReadModelSnapshot} определяет, какие события уже
+ * учтены в снимке индексов.
+ *
+ * <p>Изменения фильма, которые не влияют на индексы (название, описание, счётчик лайков
+ * и версия), пропускаются, смена статуса дружбы — тоже.
+ */
+public class EventLogTrigger implements Trigger {
+    private static final String INSERT_SQL = "INSERT INTO events (type, subject_id, object_id) VALUES (?, ?, ?)";
+
+    private String table;
+    private int subjectColumn;
+    private int objectColumn = -1;
+    private int trackedColumn = -1;
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before,
+                     int type) throws SQLException {
+        table = tableName;
+        switch (tableName) {
+            case "LIKES" -> {
+                subjectColumn = column(conn, schemaName, tableName, "FILM_ID");
+                objectColumn = column(conn, schemaName, tableName, "USER_ID");
+            }
+            case "FRIENDSHIPS" -> {
+                subjectColumn = column(conn, schemaName, tableName, "USER_ID");
+                objectColumn = column(conn, schemaName, tableName, "FRIEND_ID");
+            }
+            case "FILMS" -> {
+                subjectColumn = column(conn, schemaName, tableName, "ID");
+                trackedColumn = column(conn, schemaName, tableName, "RELEASE_DATE");
+            }
+            case "FILM_GENRES" -> subjectColumn = column(conn, schemaName, tableName, "FILM_ID");
+            default -> throw new SQLException("Журнал событий не поддерживает таблицу " + tableName);
+        }
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        boolean update = oldRow != null && newRow != null;
+        if (update && (trackedColumn < 0 || Objects.equals(oldRow[trackedColumn], newRow[trackedColumn]))) {
+            return;
+        }
+        Object[] row = newRow != null ? newRow : oldRow;
+        ChangeEvent.Type type = switch (table) {
+            case "LIKES" -> newRow != null ? ChangeEvent.Type.LIKE_ADDED : ChangeEvent.Type.LIKE_REMOVED;
+            case "FRIENDSHIPS" -> newRow != null ? ChangeEvent.Type.FRIEND_ADDED : ChangeEvent.Type.FRIEND_REMOVED;
+            default -> ChangeEvent.Type.FILM_SAVED;
+        };
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+            ps.setString(1, type.name());
+            ps.setLong(2, ((Number) row[subjectColumn]).longValue());
+            if (objectColumn >= 0) {
+                ps.setLong(3, ((Number) row[objectColumn]).longValue());
+            } else {
+                ps.setNull(3, Types.BIGINT);
+            }
+            ps.executeUpdate();
+        }
+    }
+
+    private static int column(Connection conn, String schemaName, String tableName, String columnName)
+            throws SQLException {
+        try (ResultSet rs = conn.getMetaData().getColumns(null, schemaName, tableName, columnName)) {
+            while (rs.next()) {
+                if (tableName.equals(rs.getString("TABLE_NAME")) && columnName.equals(rs.getString("COLUMN_NAME"))) {
+                    return rs.getInt("ORDINAL_POSITION") - 1;
+                }
+            }
+        }
+        throw new SQLException("В таблице " + tableName + " нет колонки " + columnName);
+    }
+}
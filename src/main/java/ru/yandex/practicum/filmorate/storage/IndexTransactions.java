@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Согласует изменения in-memory индексов с транзакцией, в которой меняется база:
+ * изменение применяется сразу (и видно внутри транзакции), а при откате транзакции
+ * отменяется компенсирующим действием.
+ */
+public final class IndexTransactions {
+
+    private IndexTransactions() {
+    }
+
+    public static void apply(Runnable change, Runnable compensation) {
+        change.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        compensation.run();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Инвалидирует кэш сразу и повторно после завершения транзакции, чтобы значение,
+     * прочитанное конкурентным запросом до коммита, не осталось в кэше.
+     */
+    public static void invalidate(Runnable invalidation) {
+        invalidation.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidation.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.film.LikesMatrixIndex;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraphIndex;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Догоняет in-memory индексы по журналу событий {@link EventLog}: применяет к ним события,
+ * записанные после снимка. Лайки и дружба применяются к матрице лайков и графу дружбы напрямую —
+ * добавление и удаление там идемпотентны. Фильмы, которых коснулись события, перечитываются
+ * из базы вместе со счётчиком лайков, поэтому событие, уже попавшее в снимок, не исказит рейтинг.
+ */
+final class ReadModelProjector {
+    private static final int IN_CLAUSE_BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EventLog eventLog;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final LikesMatrixIndex likesMatrix;
+    private final FriendGraphIndex friendGraph;
+
+    ReadModelProjector(JdbcTemplate jdbcTemplate, EventLog eventLog, PopularFilmsIndex popularFilmsIndex,
+                       LikesMatrixIndex likesMatrix, FriendGraphIndex friendGraph) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventLog = eventLog;
+        this.popularFilmsIndex = popularFilmsIndex;
+        this.likesMatrix = likesMatrix;
+        this.friendGraph = friendGraph;
+    }
+
+    /**
+     * Применяет к рейтингу популярных фильмов и матрице лайков события начиная с {@code fromEventId}.
+     *
+     * @return число применённых событий
+     */
+    int catchUpFilms(long fromEventId) {
+        Set<Long> touchedFilms = new LinkedHashSet<>();
+        EnumSet<ChangeEvent.Type> types = EnumSet.of(ChangeEvent.Type.LIKE_ADDED, ChangeEvent.Type.LIKE_REMOVED,
+                ChangeEvent.Type.FILM_SAVED);
+        int events = eventLog.forEach(fromEventId, types, event -> {
+            touchedFilms.add(event.subjectId());
+            if (event.type() == ChangeEvent.Type.LIKE_ADDED) {
+                likesMatrix.addLike(event.subjectId(), event.objectId());
+            } else if (event.type() == ChangeEvent.Type.LIKE_REMOVED) {
+                likesMatrix.removeLike(event.subjectId(), event.objectId());
+            }
+        });
+        refreshFilms(new ArrayList<>(touchedFilms));
+        return events;
+    }
+
+    /**
+     * Применяет к графу дружбы события начиная с {@code fromEventId}.
+     *
+     * @return число применённых событий
+     */
+    int catchUpFriends(long fromEventId) {
+        EnumSet<ChangeEvent.Type> types = EnumSet.of(ChangeEvent.Type.FRIEND_ADDED, ChangeEvent.Type.FRIEND_REMOVED);
+        return eventLog.forEach(fromEventId, types, event -> {
+            if (event.type() == ChangeEvent.Type.FRIEND_ADDED) {
+                friendGraph.addEdge(event.subjectId(), event.objectId());
+            } else {
+                friendGraph.removeEdge(event.subjectId(), event.objectId());
+            }
+        });
+    }
+
+    private void refreshFilms(List<Long> filmIds) {
+        for (int from = 0; from < filmIds.size(); from += IN_CLAUSE_BATCH_SIZE) {
+            List<Long> batch = filmIds.subList(from, Math.min(from + IN_CLAUSE_BATCH_SIZE, filmIds.size()));
+            String inClause = String.join(",", Collections.nCopies(batch.size(), "?"));
+            Object[] args = batch.toArray();
+
+            Map<Long, Set<Integer>> genresByFilm = new HashMap<>();
+            jdbcTemplate.query("SELECT film_id, genre_id FROM film_genres WHERE film_id IN (" + inClause + ")", rs -> {
+                genresByFilm.computeIfAbsent(rs.getLong("film_id"), id -> new HashSet<>()).add(rs.getInt("genre_id"));
+            }, args);
+
+            Set<Long> missing = new HashSet<>(batch);
+            jdbcTemplate.query("SELECT id, likes_count, release_date FROM films WHERE id IN (" + inClause + ")", rs -> {
+                long filmId = rs.getLong("id");
+                missing.remove(filmId);
+                popularFilmsIndex.replaceFilm(new PopularFilmsIndex.FilmStats(filmId, rs.getInt("likes_count"),
+                        rs.getDate("release_date").toLocalDate().getYear(),
+                        genresByFilm.getOrDefault(filmId, Set.of())));
+            }, args);
+            missing.forEach(popularFilmsIndex::removeFilm);
+        }
+    }
+}
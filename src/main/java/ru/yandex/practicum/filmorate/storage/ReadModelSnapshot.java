@@ -0,0 +1,433 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.LikesMatrixIndex;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraphIndex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Снимок горячей модели чтения в двоичном файле, чтобы после перезапуска не сканировать
+ * таблицы films, film_genres, likes и friendships: фильмы с жанрами и числом лайков,
+ * матрица лайков и граф дружбы.
+ *
+ * <p>Формат: заголовок (сигнатура, версия, id следующего события журнала {@link EventLog}),
+ * три секции, каждая с длиной в байтах и числом записей, и CRC32 всего файла. Файл пишется через
+ * {@link FileChannel} во временный файл с атомарной заменой, а читается через отображение
+ * в память.
+ *
+ * <p>После записи снимка его id события сохраняется контрольной точкой в базе, а более ранние
+ * события удаляются из журнала. При запуске снимок принимается, только если он совпадает
+ * с контрольной точкой этой базы; события, записанные после него, применяются к индексам
+ * через {@link ReadModelProjector}, так что изменения базы после остановки не требуют
+ * полного перестроения.
+ *
+ * <p>Снимок пишется при остановке и периодически, если за весь прошедший интервал база
+ * не менялась: так в файл не попадает изменение, которое уже записано в базу, но ещё не
+ * применено к индексам. Если база меняется постоянно, после {@value #MAX_DEFERRED_INTERVALS}
+ * отложенных интервалов снимок пишется принудительно. Индексы в этот момент могут содержать
+ * изменения ещё не закоммиченных транзакций и лайки из очереди отложенной записи, поэтому
+ * принудительный снимок выгружается не из индексов, а из закоммиченного состояния базы. Его позицией
+ * в журнале становится id события, увиденный интервалом раньше: изменения до него уже закоммичены,
+ * а более поздние события при загрузке применяются повторно, что безопасно. Так снимок не устаревает
+ * и журнал очищается и под постоянной нагрузкой. Пустой {@code filmorate.snapshot.file}
+ * отключает снимки; тогда журнал событий просто периодически очищается.
+ */
+@Slf4j
+@Component
+public class ReadModelSnapshot {
+    private static final int FILE_MAGIC = 0x464d5253;
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String CHECKPOINT = "read-model-snapshot";
+    private static final int MAX_DEFERRED_INTERVALS = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EventLog eventLog;
+    private final ReadModelProjector projector;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final LikesMatrixIndex likesMatrix;
+    private final FriendGraphIndex friendGraph;
+    private final Path file;
+    private final long intervalMs;
+
+    private ScheduledExecutorService scheduler;
+    private volatile Contents restored;
+    private long lastSeenCounter = -1;
+    private long lastSavedCounter = -1;
+    private int deferredIntervals;
+
+    public ReadModelSnapshot(JdbcTemplate jdbcTemplate, EventLog eventLog, PopularFilmsIndex popularFilmsIndex,
+                             LikesMatrixIndex likesMatrix, FriendGraphIndex friendGraph,
+                             @Value("${filmorate.snapshot.file:}") String file,
+                             @Value("${filmorate.snapshot.interval-ms:60000}") long intervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventLog = eventLog;
+        this.projector = new ReadModelProjector(jdbcTemplate, eventLog, popularFilmsIndex, likesMatrix, friendGraph);
+        this.popularFilmsIndex = popularFilmsIndex;
+        this.likesMatrix = likesMatrix;
+        this.friendGraph = friendGraph;
+        this.file = file.isBlank() ? null : Paths.get(file);
+        this.intervalMs = intervalMs;
+    }
+
+    /**
+     * Читает снимок, если он записан для этой базы, и запускает периодическую запись.
+     */
+    @PostConstruct
+    public void load() {
+        if (file != null && Files.exists(file)) {
+            long started = System.nanoTime();
+            try {
+                restored = read(eventLog.getCheckpoint(CHECKPOINT), eventLog.nextEventId());
+                if (restored != null) {
+                    lastSavedCounter = restored.nextEventId();
+                    log.info("Снимок модели чтения загружен из {} за {} мс: {} фильмов, {} пользователей с лайками, "
+                                    + "{} пользователей с друзьями", file, (System.nanoTime() - started) / 1_000_000,
+                            restored.films().size(), restored.filmsByUser().size(), restored.friendsByUser().size());
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Не удалось прочитать снимок модели чтения из {}: {}", file, e.getMessage());
+            }
+        }
+        if (intervalMs > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("read-model-snapshot").daemon().factory());
+            scheduler.scheduleWithFixedDelay(this::saveIfIdle, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Перестраивает индекс популярных фильмов и матрицу лайков из снимка и применяет к ним
+     * события журнала, записанные после снимка.
+     *
+     * @return {@code false}, если подходящего снимка нет и индексы нужно строить из базы
+     */
+    public boolean restoreFilms() {
+        Contents contents = restored;
+        if (contents == null) {
+            return false;
+        }
+        popularFilmsIndex.rebuild(contents.films());
+        likesMatrix.rebuild(contents.filmsByUser());
+        int events = projector.catchUpFilms(contents.nextEventId());
+        if (events > 0) {
+            log.info("К индексам фильмов из снимка применено {} событий журнала", events);
+        }
+        return true;
+    }
+
+    /**
+     * Перестраивает граф дружбы из снимка и применяет к нему события журнала, записанные после снимка.
+     *
+     * @return {@code false}, если подходящего снимка нет и граф нужно строить из базы
+     */
+    public boolean restoreFriends() {
+        Contents contents = restored;
+        if (contents == null) {
+            return false;
+        }
+        friendGraph.rebuild(contents.friendsByUser());
+        int events = projector.catchUpFriends(contents.nextEventId());
+        if (events > 0) {
+            log.info("К графу дружбы из снимка применено {} событий журнала", events);
+        }
+        return true;
+    }
+
+    /**
+     * Записывает текущее состояние индексов, если за время его выгрузки база не изменилась.
+     */
+    public synchronized void save() {
+        if (file == null) {
+            return;
+        }
+        restored = null;
+        long counter = eventLog.nextEventId();
+        if (counter == lastSavedCounter) {
+            return;
+        }
+        long started = System.nanoTime();
+        Contents contents = export(counter);
+        if (eventLog.nextEventId() != counter) {
+            log.debug("База изменилась во время выгрузки индексов, снимок не записан");
+            return;
+        }
+        writeAndCheckpoint(contents, started);
+    }
+
+    /**
+     * Записывает закоммиченное состояние базы с позицией {@code settledEventId} в журнале, не дожидаясь
+     * паузы в изменениях базы. События начиная с этой позиции при загрузке применяются заново.
+     */
+    private synchronized void saveSettled(long settledEventId) {
+        restored = null;
+        long started = System.nanoTime();
+        writeAndCheckpoint(exportCommitted(settledEventId), started);
+    }
+
+    private Contents export(long nextEventId) {
+        return new Contents(nextEventId, popularFilmsIndex.getFilms(), likesMatrix.getFilmsByUser(),
+                friendGraph.getAdjacency());
+    }
+
+    /**
+     * Выгружает модель чтения из таблиц, а не из индексов, так что в неё попадают только закоммиченные изменения.
+     */
+    private Contents exportCommitted(long nextEventId) {
+        Map<Long, Set<Integer>> genresByFilm = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genres", rs -> {
+            genresByFilm.computeIfAbsent(rs.getLong("film_id"), id -> new HashSet<>()).add(rs.getInt("genre_id"));
+        });
+        List<PopularFilmsIndex.FilmStats> films = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, likes_count, release_date FROM films", rs -> {
+            long filmId = rs.getLong("id");
+            films.add(new PopularFilmsIndex.FilmStats(filmId, rs.getInt("likes_count"),
+                    rs.getDate("release_date").toLocalDate().getYear(), genresByFilm.getOrDefault(filmId, Set.of())));
+        });
+        Map<Long, long[]> filmsByUser = jdbcTemplate.query("SELECT user_id, film_id FROM likes ORDER BY user_id, film_id",
+                rs -> {
+                    return Adjacency.read(rs, "user_id", "film_id");
+                });
+        Map<Long, long[]> friendsByUser = jdbcTemplate.query(
+                "SELECT user_id, friend_id FROM friendships ORDER BY user_id, friend_id", rs -> {
+                    return Adjacency.read(rs, "user_id", "friend_id");
+                });
+        return new Contents(nextEventId, films, filmsByUser, friendsByUser);
+    }
+
+    private void writeAndCheckpoint(Contents contents, long started) {
+        try {
+            write(contents);
+            lastSavedCounter = contents.nextEventId();
+            deferredIntervals = 0;
+            eventLog.saveCheckpoint(CHECKPOINT, contents.nextEventId());
+            log.info("Снимок модели чтения записан в {} за {} мс, удалено {} событий журнала", file,
+                    (System.nanoTime() - started) / 1_000_000, eventLog.prune());
+        } catch (IOException e) {
+            log.warn("Не удалось записать снимок модели чтения в {}: {}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        save();
+    }
+
+    private synchronized void saveIfIdle() {
+        try {
+            long counter = eventLog.nextEventId();
+            long settled = lastSeenCounter;
+            lastSeenCounter = counter;
+            if (file == null) {
+                eventLog.saveCheckpoint(CHECKPOINT, counter);
+                eventLog.prune();
+            } else if (counter == settled) {
+                deferredIntervals = 0;
+                save();
+            } else if (++deferredIntervals >= MAX_DEFERRED_INTERVALS && settled > lastSavedCounter) {
+                log.debug("База не простаивала {} интервалов, снимок записывается принудительно", deferredIntervals);
+                saveSettled(settled);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Не удалось записать снимок модели чтения: {}", e.getMessage());
+        }
+    }
+
+    private void write(Contents contents) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            SectionWriter out = new SectionWriter(channel);
+            out.ensure(HEADER_SIZE).putInt(FILE_MAGIC).putInt(FILE_VERSION).putLong(contents.nextEventId());
+
+            long filmsSize = 0;
+            for (PopularFilmsIndex.FilmStats film : contents.films()) {
+                filmsSize += Long.BYTES + 3 * Integer.BYTES + (long) Integer.BYTES * film.genreIds().size();
+            }
+            out.ensure(Long.BYTES + Integer.BYTES).putLong(filmsSize).putInt(contents.films().size());
+            for (PopularFilmsIndex.FilmStats film : contents.films()) {
+                out.ensure(Long.BYTES + 3 * Integer.BYTES)
+                        .putLong(film.filmId())
+                        .putInt(film.likes())
+                        .putInt(film.year())
+                        .putInt(film.genreIds().size());
+                for (int genreId : film.genreIds()) {
+                    out.ensure(Integer.BYTES).putInt(genreId);
+                }
+            }
+
+            writeAdjacency(out, contents.filmsByUser());
+            writeAdjacency(out, contents.friendsByUser());
+            out.finish();
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeAdjacency(SectionWriter out, Map<Long, long[]> adjacency) throws IOException {
+        long size = 0;
+        for (long[] values : adjacency.values()) {
+            size += Long.BYTES + Integer.BYTES + (long) Long.BYTES * values.length;
+        }
+        out.ensure(Long.BYTES + Integer.BYTES).putLong(size).putInt(adjacency.size());
+        for (Map.Entry<Long, long[]> entry : adjacency.entrySet()) {
+            out.ensure(Long.BYTES + Integer.BYTES).putLong(entry.getKey()).putInt(entry.getValue().length);
+            for (long value : entry.getValue()) {
+                out.ensure(Long.BYTES).putLong(value);
+            }
+        }
+    }
+
+    /**
+     * Читает снимок из файла.
+     *
+     * @param checkpoint  контрольная точка снимка в базе: id события, на котором был записан последний снимок
+     * @param nextEventId id следующего события журнала
+     * @return содержимое снимка или {@code null}, если он записан не для этой базы или устарел
+     */
+    private Contents read(long checkpoint, long nextEventId) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE + Integer.BYTES || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("недопустимый размер файла снимка: " + fileSize);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            if (buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_VERSION) {
+                throw new IOException("неизвестный формат файла снимка");
+            }
+            long eventId = buffer.getLong();
+            if (eventId != checkpoint || eventId > nextEventId) {
+                log.info("Снимок модели чтения {} не соответствует базе, индексы будут построены из базы", file);
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(0, (int) fileSize - Integer.BYTES));
+            if (buffer.getInt((int) fileSize - Integer.BYTES) != (int) crc.getValue()) {
+                throw new IOException("не совпала контрольная сумма файла снимка");
+            }
+
+            long filmsSize = buffer.getLong();
+            int filmsCount = buffer.getInt();
+            long filmsEnd = buffer.position() + filmsSize;
+            List<PopularFilmsIndex.FilmStats> films = new ArrayList<>(filmsCount);
+            for (int i = 0; i < filmsCount; i++) {
+                long filmId = buffer.getLong();
+                int likes = buffer.getInt();
+                int year = buffer.getInt();
+                int genresCount = buffer.getInt();
+                Set<Integer> genreIds = new HashSet<>(genresCount * 2);
+                for (int g = 0; g < genresCount; g++) {
+                    genreIds.add(buffer.getInt());
+                }
+                films.add(new PopularFilmsIndex.FilmStats(filmId, likes, year, genreIds));
+            }
+            checkSectionEnd(buffer, filmsEnd);
+
+            Map<Long, long[]> filmsByUser = readAdjacency(buffer);
+            Map<Long, long[]> friendsByUser = readAdjacency(buffer);
+            if (buffer.position() != fileSize - Integer.BYTES) {
+                throw new IOException("лишние данные в конце файла снимка");
+            }
+            return new Contents(eventId, films, filmsByUser, friendsByUser);
+        }
+    }
+
+    private static Map<Long, long[]> readAdjacency(ByteBuffer buffer) throws IOException {
+        long size = buffer.getLong();
+        int count = buffer.getInt();
+        long sectionEnd = buffer.position() + size;
+        Map<Long, long[]> adjacency = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            long key = buffer.getLong();
+            long[] values = new long[buffer.getInt()];
+            buffer.asLongBuffer().get(values);
+            buffer.position(buffer.position() + Long.BYTES * values.length);
+            adjacency.put(key, values);
+        }
+        checkSectionEnd(buffer, sectionEnd);
+        return adjacency;
+    }
+
+    private static void checkSectionEnd(ByteBuffer buffer, long expected) throws IOException {
+        if (buffer.position() != expected) {
+            throw new IOException("длина секции файла снимка не совпадает с содержимым");
+        }
+    }
+
+    /**
+     * Буферизованная запись в канал с подсчётом CRC32 всего записанного.
+     */
+    private static final class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+
+        private SectionWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Освобождает в буфере место под {@code bytes} байт и возвращает буфер для записи.
+         */
+        private ByteBuffer ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+            return buffer;
+        }
+
+        private void finish() throws IOException {
+            drain();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    private record Contents(long nextEventId, List<PopularFilmsIndex.FilmStats> films,
+                            Map<Long, long[]> filmsByUser, Map<Long, long[]> friendsByUser) {
+    }
+}
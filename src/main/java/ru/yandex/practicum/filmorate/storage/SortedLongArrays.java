@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+
+/**
+ * Операции над отсортированными по возрастанию массивами {@code long} без повторов —
+ * компактное представление множеств идентификаторов для in-memory индексов.
+ * Массивы не изменяются на месте: вставка и удаление возвращают новый массив.
+ */
+public final class SortedLongArrays {
+    public static final long[] EMPTY = new long[0];
+
+    private SortedLongArrays() {
+    }
+
+    public static boolean contains(long[] array, long value) {
+        return Arrays.binarySearch(array, value) >= 0;
+    }
+
+    public static long[] insert(long[] array, long value) {
+        int position = Arrays.binarySearch(array, value);
+        if (position >= 0) {
+            return array;
+        }
+        int insertAt = -position - 1;
+        long[] result = new long[array.length + 1];
+        System.arraycopy(array, 0, result, 0, insertAt);
+        result[insertAt] = value;
+        System.arraycopy(array, insertAt, result, insertAt + 1, array.length - insertAt);
+        return result;
+    }
+
+    public static long[] remove(long[] array, long value) {
+        int position = Arrays.binarySearch(array, value);
+        if (position < 0) {
+            return array;
+        }
+        if (array.length == 1) {
+            return EMPTY;
+        }
+        long[] result = new long[array.length - 1];
+        System.arraycopy(array, 0, result, 0, position);
+        System.arraycopy(array, position + 1, result, position, array.length - position - 1);
+        return result;
+    }
+
+    /**
+     * Размер пересечения двух множеств без выделения памяти под результат.
+     */
+    public static int intersectionSize(long[] left, long[] right) {
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                size++;
+                i++;
+                j++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Пересечение двух множеств слиянием за O(n + m).
+     */
+    public static long[] intersect(long[] left, long[] right) {
+        long[] result = new long[Math.min(left.length, right.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                result[size++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+}
@@ -1,28 +1,42 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.CompactLongSet;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
 import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
+import ru.yandex.practicum.filmorate.model.View;
+import ru.yandex.practicum.filmorate.storage.Adjacency;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+import ru.yandex.practicum.filmorate.storage.IndexTransactions;
+import ru.yandex.practicum.filmorate.storage.ReadModelSnapshot;
 import ru.yandex.practicum.filmorate.storage.film.mapper.FilmRowMapper;
-import ru.yandex.practicum.filmorate.storage.film.mapper.GenreRowMapper;
-import ru.yandex.practicum.filmorate.storage.film.mapper.MpaRowMapper;
 
 import java.sql.PreparedStatement;
 
 import java.sql.Statement;
 import java.sql.Date;
+import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Repository
@@ -32,49 +46,125 @@ public class FilmDbStorage implements FilmStorage {
 
     private final JdbcTemplate jdbcTemplate;
     private final FilmRowMapper filmMapper;
-    private final MpaRowMapper mpaRatingMapper;
-    private final GenreRowMapper genreMapper;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final ReferenceDataCache referenceDataCache;
+    private final EntityCache<Long, Film> filmCache;
+    private final LikeWriteBehindQueue likeQueue;
+    private final LikesMatrixIndex likesMatrix;
+    private final TrendingFilmsIndex trendingIndex;
+    private final FilmSearchIndex searchIndex;
+    private final ReadModelSnapshot readModelSnapshot;
 
     @Autowired
-    public FilmDbStorage(JdbcTemplate jdbcTemplate) {
+    public FilmDbStorage(JdbcTemplate jdbcTemplate, PopularFilmsIndex popularFilmsIndex,
+                         ReferenceDataCache referenceDataCache, LikeWriteBehindQueue likeQueue,
+                         LikesMatrixIndex likesMatrix, TrendingFilmsIndex trendingIndex,
+                         FilmSearchIndex searchIndex, ReadModelSnapshot readModelSnapshot,
+                         @Value("${filmorate.cache.films.max-weight:1000000}") long filmCacheMaxWeight) {
         this.jdbcTemplate = jdbcTemplate;
         this.filmMapper = new FilmRowMapper();
-        this.mpaRatingMapper = new MpaRowMapper();
-        this.genreMapper = new GenreRowMapper();
+        this.popularFilmsIndex = popularFilmsIndex;
+        this.likesMatrix = likesMatrix;
+        this.trendingIndex = trendingIndex;
+        this.searchIndex = searchIndex;
+        this.readModelSnapshot = readModelSnapshot;
+        this.referenceDataCache = referenceDataCache;
+        this.likeQueue = likeQueue;
+        this.filmCache = new EntityCache<>(filmCacheMaxWeight,
+                film -> 1L + film.getGenres().size() + film.getLikes().size(),
+                FilmDbStorage::copyOf);
     }
 
-    private static final LocalDate EARLIEST_RELEASE_DATE = LocalDate.of(1895, 12, 28);
-    private static final String ERROR_INVALID_RELEASE_DATE = "Дата релиза не может быть раньше 28.12.1895";
+    @PostConstruct
+    public void init() {
+        if (!readModelSnapshot.restoreFilms()) {
+            buildIndexes();
+        }
+        buildTrendingIndex();
+
+        long[] fingerprint = filmsFingerprint();
+        if (!searchIndex.load(fingerprint[0], fingerprint[1])) {
+            searchIndex.clear();
+            jdbcTemplate.query("SELECT id, name, description FROM films", rs -> {
+                searchIndex.index(rs.getLong("id"), rs.getString("name"), rs.getString("description"));
+            });
+            log.info("Поисковый индекс построен для {} фильмов", fingerprint[0]);
+        }
 
-    @Override
-    public Film addFilm(Film film) {
+        if (likeQueue.isEnabled()) {
+            likeQueue.start(this::applyLikeMutations, this::revertLikeMutation);
+        }
+    }
 
-        validateFilm(film);
+    private void buildIndexes() {
+        Map<Long, Set<Integer>> genresByFilm = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genres", rs -> {
+            genresByFilm.computeIfAbsent(rs.getLong("film_id"), id -> new HashSet<>()).add(rs.getInt("genre_id"));
+        });
+        List<PopularFilmsIndex.FilmStats> films = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, likes_count, release_date FROM films", rs -> {
+            long filmId = rs.getLong("id");
+            films.add(new PopularFilmsIndex.FilmStats(filmId, rs.getInt("likes_count"),
+                    rs.getDate("release_date").toLocalDate().getYear(), genresByFilm.getOrDefault(filmId, Set.of())));
+        });
+        popularFilmsIndex.rebuild(films);
+        log.info("Индекс популярных фильмов построен для {} фильмов", films.size());
+
+        String likesSql = "SELECT user_id, film_id FROM likes ORDER BY user_id, film_id";
+        Map<Long, long[]> filmsByUser = jdbcTemplate.query(likesSql, rs -> {
+            return Adjacency.read(rs, "user_id", "film_id");
+        });
+        likesMatrix.rebuild(filmsByUser);
+        log.info("Матрица лайков построена для {} пользователей", filmsByUser.size());
+    }
 
-        if (film.getMpa() != null && film.getMpa().getId() != null) {
-            String sql = "SELECT COUNT(*) FROM mpa_ratings WHERE id = ?";
-            Integer mpaCount = jdbcTemplate.queryForObject(sql, Integer.class, film.getMpa().getId());
+    /**
+     * Тренды не входят в снимок read-модели: лайков за неделю немного, и они выбираются
+     * по индексу на likes.created_at.
+     */
+    private void buildTrendingIndex() {
+        trendingIndex.clear();
+        Timestamp since = new Timestamp(System.currentTimeMillis() - TrendingWindow.WEEK.getDuration().toMillis());
+        int[] count = new int[1];
+        jdbcTemplate.query("SELECT film_id, user_id, created_at FROM likes WHERE created_at >= ?", rs -> {
+            trendingIndex.addLike(rs.getLong("film_id"), rs.getLong("user_id"), rs.getTimestamp("created_at").getTime());
+            count[0]++;
+        }, since);
+        log.info("Индекс трендов построен по {} лайкам за неделю", count[0]);
+    }
 
-            if (mpaCount == 0) {
-                throw new NotFoundException("Рейтинг MPA с id " + film.getMpa().getId() + " не найден");
-            }
-        } else {
-            throw new ValidationException("Требуется рейтинг MPA");
-        }
+    @PreDestroy
+    public void shutdown() {
+        likeQueue.shutdown();
+        long[] fingerprint = filmsFingerprint();
+        searchIndex.save(fingerprint[0], fingerprint[1]);
+    }
 
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            Set<Integer> genreIds = film.getGenres().stream()
-                    .map(Genre::getId)
-                    .collect(Collectors.toSet());
+    /**
+     * Число фильмов и максимальный id — по ним проверяется, что сохранённый поисковый индекс
+     * соответствует содержимому таблицы.
+     */
+    private long[] filmsFingerprint() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*), COALESCE(MAX(id), 0) FROM films",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+    }
 
-            String sql = "SELECT COUNT(*) FROM genres WHERE id IN (" +
-                    genreIds.stream().map(String::valueOf).collect(Collectors.joining(",")) + ")";
-            Integer genresCount = jdbcTemplate.queryForObject(sql, Integer.class);
+    private static final LocalDate EARLIEST_RELEASE_DATE = LocalDate.of(1895, 12, 28);
+    private static final String ERROR_INVALID_RELEASE_DATE = "Дата релиза не может быть раньше 28.12.1895";
+    private static final int IN_CLAUSE_BATCH_SIZE = 1000;
+    private static final String INSERT_LIKE_SQL = """
+            INSERT INTO likes (film_id, user_id)
+            SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)
+            """;
 
-            if (genresCount == null || genresCount != genreIds.size()) {
-                throw new NotFoundException("Жанры не найдены");
-            }
+    @Override
+    @Transactional
+    public Film addFilm(Film film) {
+        validateFilm(film);
+        if (film.getMpa() == null || film.getMpa().getId() == null) {
+            throw new ValidationException("Требуется рейтинг MPA");
         }
+        checkMpaExists(film.getMpa());
 
         String sql = "INSERT INTO films (name, description, release_date, duration, mpa_rating_id) "
                 + "VALUES (?, ?, ?, ?, ?)";
@@ -86,56 +176,101 @@ public class FilmDbStorage implements FilmStorage {
             ps.setString(2, film.getDescription());
             ps.setDate(3, Date.valueOf(film.getReleaseDate()));
             ps.setInt(4, film.getDuration());
-            ps.setInt(5, film.getMpa() != null ? film.getMpa().getId() : null);
+            ps.setInt(5, film.getMpa().getId());
             return ps;
         }, keyHolder);
 
         Long newId = keyHolder.getKey().longValue();
         film.setId(newId);
 
-        saveFilmGenres(film);
+        Set<Integer> genreIds = genreIds(film);
+        saveFilmGenres(newId, genreIds);
+        IndexTransactions.apply(() -> popularFilmsIndex.putFilm(newId, film.getReleaseDate().getYear(), genreIds),
+                () -> popularFilmsIndex.removeFilm(newId));
+        IndexTransactions.apply(() -> searchIndex.index(newId, film.getName(), film.getDescription()),
+                () -> searchIndex.restore(newId, null));
+        touchPopularFilms();
 
         log.info("Добавлен фильм с id: {}", film.getId());
-        return getFilmById(film.getId());
+        Film written = writtenFilm(film, genreIds, Set.of());
+        long stamp = filmCache.stamp();
+        IndexTransactions.apply(() -> filmCache.put(newId, written, stamp), () -> filmCache.invalidate(newId));
+        return written;
     }
 
-   @Override
+    @Override
+    @Transactional
     public Film updateFilm(Film film) {
-
-        if (film.getId() == null || !deleteFilm(film.getId())) {
-           throw new NotFoundException("Фильм не найден");
-        }
-
         validateFilm(film);
+        checkMpaExists(film.getMpa());
 
         String sql = """
-            UPDATE films
-            SET name = ?, description = ?, release_date = ?,
-                duration = ?, mpa_rating_id = ?
-            WHERE id = ?
-            """;
-
-       jdbcTemplate.update(sql,
-               film.getName(),
-               film.getDescription(),
-               film.getReleaseDate(),
-               film.getDuration(),
-               film.getMpa() != null ? film.getMpa().getId() : null,
-               film.getId()
-       );
-
-       jdbcTemplate.update("DELETE FROM film_genres WHERE film_id = ?", film.getId());
-       saveFilmGenres(film);
+                UPDATE films
+                SET name = ?, description = ?, release_date = ?,
+                    duration = ?, mpa_rating_id = ?, version = version + 1
+                WHERE id = ?
+                """;
+
+        int updated = film.getId() == null ? 0 : jdbcTemplate.update(sql,
+                film.getName(),
+                film.getDescription(),
+                film.getReleaseDate(),
+                film.getDuration(),
+                film.getMpa() != null ? film.getMpa().getId() : null,
+                film.getId()
+        );
+        if (updated == 0) {
+            throw new NotFoundException("Фильм не найден");
+        }
 
-       log.info("Фильм с id {} обновлен", film.getId());
-       return getFilmById(film.getId());
+        Set<Integer> genreIds = genreIds(film);
+        jdbcTemplate.update("DELETE FROM film_genres WHERE film_id = ?", film.getId());
+        saveFilmGenres(film.getId(), genreIds);
+        IndexTransactions.invalidate(() -> filmCache.invalidate(film.getId()));
+
+        PopularFilmsIndex.FilmStats previous = popularFilmsIndex.getFilm(film.getId());
+        IndexTransactions.apply(
+                () -> popularFilmsIndex.putFilm(film.getId(), film.getReleaseDate().getYear(), genreIds),
+                () -> {
+                    if (previous != null) {
+                        popularFilmsIndex.putFilm(previous.filmId(), previous.year(), previous.genreIds());
+                    }
+                });
+        FilmSearchIndex.Document previousDocument = searchIndex.getDocument(film.getId());
+        IndexTransactions.apply(() -> searchIndex.index(film.getId(), film.getName(), film.getDescription()),
+                () -> searchIndex.restore(film.getId(), previousDocument));
+        touchPopularFilms();
+
+        log.info("Фильм с id {} обновлен", film.getId());
+        Set<Long> likes = new HashSet<>();
+        for (long userId : likesMatrix.getUsers(film.getId())) {
+            likes.add(userId);
+        }
+        return writtenFilm(film, genreIds, likes);
     }
 
-    @Override
-    public boolean deleteFilm(Long id) {
-        String sql = "SELECT COUNT(*) FROM films WHERE id = ?";
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, id);
-        return count != null && count > 0;
+    /**
+     * Собирает ответ из только что записанных данных без повторного чтения из базы:
+     * названия рейтинга и жанров берутся из справочника, лайки — из матрицы лайков.
+     */
+    private Film writtenFilm(Film film, Set<Integer> genreIds, Set<Long> likes) {
+        Film written = new Film();
+        written.setId(film.getId());
+        written.setName(film.getName());
+        written.setDescription(film.getDescription());
+        written.setReleaseDate(film.getReleaseDate());
+        written.setDuration(film.getDuration());
+        MpaRating mpa = film.getMpa() != null ? referenceDataCache.getMpaRating(film.getMpa().getId()) : null;
+        written.setMpa(mpa != null ? new MpaRating(mpa.getId(), mpa.getName()) : film.getMpa());
+        written.setGenres(genreIds.stream()
+                .sorted()
+                .map(id -> {
+                    Genre genre = referenceDataCache.getGenre(id);
+                    return new Genre(id, genre != null ? genre.getName() : null);
+                })
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
+        written.setLikes(new CompactLongSet(likes));
+        return written;
     }
 
     @Override
@@ -147,17 +282,67 @@ public class FilmDbStorage implements FilmStorage {
             WHERE f.id = ?
             """;
 
+        Film cached = filmCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        long stamp = filmCache.stamp();
         try {
             Film film = jdbcTemplate.queryForObject(sql, filmMapper, id);
             loadFilmData(film);
+            filmCache.put(id, film, stamp);
             return film;
         } catch (EmptyResultDataAccessException e) {
             throw new NotFoundException("Фильм с id " + id + " не найден");
         }
     }
 
+    @Override
+    public long getFilmVersion(Long id) {
+        try {
+            Long version = jdbcTemplate.queryForObject("SELECT version FROM films WHERE id = ?", Long.class, id);
+            return version != null ? version : 0;
+        } catch (EmptyResultDataAccessException e) {
+            throw new NotFoundException("Фильм с id " + id + " не найден");
+        }
+    }
+
+    @Override
+    public String getPopularFilmsVersion() {
+        return popularFilmsIndex.getVersion();
+    }
+
+    /**
+     * Версия справочников жанров и рейтингов MPA: меняется только при изменении их содержимого.
+     */
+    public String getReferenceDataVersion() {
+        return referenceDataCache.getVersion();
+    }
+
+    @Override
+    public boolean filmExists(Long id) {
+        if (id == null) {
+            return false;
+        }
+        if (filmCache.contains(id)) {
+            return true;
+        }
+        String sql = "SELECT EXISTS (SELECT 1 FROM films WHERE id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+    }
+
+    public EntityCache.Stats getFilmCacheStats() {
+        return filmCache.getStats();
+    }
+
     @Override
     public Collection<Film> getAllFilms() {
+        return getAllFilms(View.FULL);
+    }
+
+    @Override
+    public Collection<Film> getAllFilms(View view) {
         String sql = """
             SELECT f.*, m.name as mpa_name
             FROM films f
@@ -166,72 +351,328 @@ public class FilmDbStorage implements FilmStorage {
             """;
 
         List<Film> films = jdbcTemplate.query(sql, filmMapper);
-        films.forEach(this::loadFilmData);
+        loadFilmsData(films, view);
         return films;
     }
 
     @Override
+    public List<Film> getFilms(long afterId, int limit) {
+        return getFilms(afterId, limit, View.FULL);
+    }
+
+    @Override
+    public List<Film> getFilms(long afterId, int limit, View view) {
+        String sql = """
+            SELECT f.*, m.name as mpa_name
+            FROM films f
+            LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.id
+            WHERE f.id > ?
+            ORDER BY f.id
+            LIMIT ?
+            """;
+
+        List<Film> films = jdbcTemplate.query(sql, filmMapper, afterId, limit);
+        loadFilmsData(films, view);
+        return films;
+    }
+
+    @Override
+    public void forEachFilm(int batchSize, Consumer<Film> action) {
+        long afterId = 0;
+        List<Film> page;
+        do {
+            page = getFilms(afterId, batchSize);
+            page.forEach(action);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == batchSize);
+    }
+
+    @Override
+    @Transactional
     public void addLike(Long filmId, Long userId) {
-        String sql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
+        if (likeQueue.isEnabled()) {
+            if (likeQueue.submit(filmId, userId, true, () -> likeExists(filmId, userId))) {
+                onLikesChanged(filmId, userId, true);
+            } else {
+                log.warn("Пользователь {} уже поставил лайк фильму {}", userId, filmId);
+            }
+            return;
+        }
+
+        int inserted;
         try {
-            jdbcTemplate.update(sql, filmId, userId);
-        } catch (Exception e) {
+            inserted = jdbcTemplate.update(INSERT_LIKE_SQL, filmId, userId, filmId, userId);
+        } catch (DuplicateKeyException e) {
+            inserted = 0;
+        }
+        if (inserted == 0) {
             log.warn("Пользователь {} уже поставил лайк фильму {}", userId, filmId);
+            return;
         }
+
+        jdbcTemplate.update("UPDATE films SET likes_count = likes_count + 1, version = version + 1 WHERE id = ?", filmId);
+        onLikesChanged(filmId, userId, true);
     }
 
     @Override
+    @Transactional
+    public boolean[] addLikes(List<Like> likes) {
+        boolean[] added = new boolean[likes.size()];
+        Map<Long, Integer> addedByFilm = new HashMap<>();
+
+        if (likeQueue.isEnabled()) {
+            for (int i = 0; i < likes.size(); i++) {
+                Long filmId = likes.get(i).getFilmId();
+                Long userId = likes.get(i).getUserId();
+                added[i] = likeQueue.submit(filmId, userId, true, () -> likeExists(filmId, userId));
+                if (added[i]) {
+                    onLikesChanged(filmId, userId, true);
+                }
+            }
+            return added;
+        }
+
+        for (int from = 0; from < likes.size(); from += IN_CLAUSE_BATCH_SIZE) {
+            List<Like> batch = likes.subList(from, Math.min(from + IN_CLAUSE_BATCH_SIZE, likes.size()));
+            List<Object[]> batchArgs = batch.stream()
+                    .map(like -> new Object[]{like.getFilmId(), like.getUserId(), like.getFilmId(), like.getUserId()})
+                    .toList();
+
+            int[] inserted = jdbcTemplate.batchUpdate(INSERT_LIKE_SQL, batchArgs);
+            for (int i = 0; i < inserted.length; i++) {
+                if (inserted[i] > 0) {
+                    added[from + i] = true;
+                    addedByFilm.merge(batch.get(i).getFilmId(), 1, Integer::sum);
+                }
+            }
+        }
+
+        if (!addedByFilm.isEmpty()) {
+            List<Object[]> counterArgs = addedByFilm.entrySet().stream()
+                    .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                    .toList();
+            jdbcTemplate.batchUpdate("UPDATE films SET likes_count = likes_count + ?, version = version + 1 WHERE id = ?", counterArgs);
+
+            addedByFilm.forEach((filmId, count) -> {
+                IndexTransactions.apply(() -> popularFilmsIndex.adjustLikes(filmId, count),
+                        () -> popularFilmsIndex.adjustLikes(filmId, -count));
+                IndexTransactions.invalidate(() -> filmCache.invalidate(filmId));
+            });
+            for (int i = 0; i < likes.size(); i++) {
+                if (added[i]) {
+                    long filmId = likes.get(i).getFilmId();
+                    long userId = likes.get(i).getUserId();
+                    IndexTransactions.apply(() -> likesMatrix.addLike(filmId, userId),
+                            () -> likesMatrix.removeLike(filmId, userId));
+                    addTrendingLike(filmId, userId);
+                }
+            }
+            touchPopularFilms();
+        }
+
+        log.info("Пакетно добавлено {} лайков из {}", addedByFilm.values().stream().mapToInt(Integer::intValue).sum(),
+                likes.size());
+        return added;
+    }
+
+    @Override
+    public Set<Long> findExistingFilmIds(Collection<Long> ids) {
+        Set<Long> existing = new HashSet<>();
+        List<Long> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += IN_CLAUSE_BATCH_SIZE) {
+            List<Long> batch = idList.subList(from, Math.min(from + IN_CLAUSE_BATCH_SIZE, idList.size()));
+            String sql = "SELECT id FROM films WHERE id IN ("
+                    + String.join(",", Collections.nCopies(batch.size(), "?")) + ")";
+            existing.addAll(jdbcTemplate.queryForList(sql, Long.class, batch.toArray()));
+        }
+        return existing;
+    }
+
+    @Override
+    @Transactional
     public void deleteLike(Long filmId, Long userId) {
+        if (likeQueue.isEnabled()) {
+            if (!likeQueue.submit(filmId, userId, false, () -> likeExists(filmId, userId))) {
+                throw new NotFoundException("Лайк не найден у пользователя " + userId + " и фильма " + filmId);
+            }
+            onLikesChanged(filmId, userId, false);
+            return;
+        }
+
         String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
         int deleted = jdbcTemplate.update(sql, filmId, userId);
         if (deleted == 0) {
             throw new NotFoundException("Лайк не найден у пользователя " + userId + " и фильма " + filmId);
         }
+
+        jdbcTemplate.update("UPDATE films SET likes_count = likes_count - 1, version = version + 1 WHERE id = ?", filmId);
+        onLikesChanged(filmId, userId, false);
+    }
+
+    private boolean likeExists(Long filmId, Long userId) {
+        String sql = "SELECT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, filmId, userId));
+    }
+
+    /**
+     * Обновляет in-memory представления после того, как пользователь поставил или снял лайк.
+     */
+    private void onLikesChanged(Long filmId, Long userId, boolean like) {
+        int delta = like ? 1 : -1;
+        IndexTransactions.invalidate(() -> filmCache.invalidate(filmId));
+        IndexTransactions.apply(() -> popularFilmsIndex.adjustLikes(filmId, delta),
+                () -> popularFilmsIndex.adjustLikes(filmId, -delta));
+        touchPopularFilms();
+        if (like) {
+            IndexTransactions.apply(() -> likesMatrix.addLike(filmId, userId),
+                    () -> likesMatrix.removeLike(filmId, userId));
+            addTrendingLike(filmId, userId);
+        } else {
+            IndexTransactions.apply(() -> likesMatrix.removeLike(filmId, userId),
+                    () -> likesMatrix.addLike(filmId, userId));
+            long now = System.currentTimeMillis();
+            long[] likedAt = new long[1];
+            IndexTransactions.apply(() -> likedAt[0] = trendingIndex.removeLike(filmId, userId, now),
+                    () -> trendingIndex.addLike(filmId, userId, likedAt[0]));
+        }
+    }
+
+    /**
+     * Индекс популярных фильмов меняет версию сразу, до коммита, а фильмы списка читаются из базы.
+     * Повторная смена версии после завершения транзакции не даёт закрепить под новой версией
+     * ETag или закэшированное тело со строками, прочитанными до коммита.
+     */
+    private void touchPopularFilms() {
+        IndexTransactions.invalidate(popularFilmsIndex::touch);
+    }
+
+    private void addTrendingLike(long filmId, long userId) {
+        long now = System.currentTimeMillis();
+        IndexTransactions.apply(() -> trendingIndex.addLike(filmId, userId, now),
+                () -> trendingIndex.removeLike(filmId, userId, System.currentTimeMillis()));
+    }
+
+    @Override
+    public List<Film> getRecommendedFilms(Long userId, int limit) {
+        return getFilmsByIds(Arrays.stream(likesMatrix.recommendFilms(userId, limit)).boxed().toList());
+    }
+
+    /**
+     * Записывает в базу пакет операций из очереди отложенной записи. Вызывается очередью
+     * внутри транзакции; in-memory индексы уже обновлены в момент постановки в очередь.
+     * Версия рейтинга популярных фильмов меняется ещё раз после коммита, потому что полные
+     * представления фильмов берут лайки из таблицы.
+     */
+    private void applyLikeMutations(List<LikeWriteBehindQueue.LikeMutation> mutations) {
+        List<LikeWriteBehindQueue.LikeMutation> inserts = mutations.stream()
+                .filter(LikeWriteBehindQueue.LikeMutation::like)
+                .toList();
+        List<LikeWriteBehindQueue.LikeMutation> deletes = mutations.stream()
+                .filter(mutation -> !mutation.like())
+                .toList();
+        Map<Long, Integer> deltaByFilm = new HashMap<>();
+
+        int[] inserted = jdbcTemplate.batchUpdate(INSERT_LIKE_SQL, inserts.stream()
+                .map(m -> new Object[]{m.filmId(), m.userId(), m.filmId(), m.userId()})
+                .toList());
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] > 0) {
+                deltaByFilm.merge(inserts.get(i).filmId(), 1, Integer::sum);
+            }
+        }
+
+        int[] deleted = jdbcTemplate.batchUpdate("DELETE FROM likes WHERE film_id = ? AND user_id = ?",
+                deletes.stream()
+                        .map(m -> new Object[]{m.filmId(), m.userId()})
+                        .toList());
+        for (int i = 0; i < deleted.length; i++) {
+            if (deleted[i] > 0) {
+                deltaByFilm.merge(deletes.get(i).filmId(), -1, Integer::sum);
+            }
+        }
+
+        List<Object[]> counterArgs = deltaByFilm.entrySet().stream()
+                .filter(entry -> entry.getValue() != 0)
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList();
+        jdbcTemplate.batchUpdate("UPDATE films SET likes_count = likes_count + ?, version = version + 1 WHERE id = ?", counterArgs);
+
+        mutations.forEach(mutation -> filmCache.invalidate(mutation.filmId()));
+        touchPopularFilms();
+        log.debug("Записан пакет из {} операций с лайками", mutations.size());
+    }
+
+    /**
+     * Отменяет изменение индексов операцией, которую очередь отложенной записи так и не смогла записать.
+     */
+    private void revertLikeMutation(LikeWriteBehindQueue.LikeMutation mutation) {
+        onLikesChanged(mutation.filmId(), mutation.userId(), !mutation.like());
     }
 
     @Override
     public List<Film> getPopularFilms(int count) {
-        String sql = """
-            SELECT f.*, m.name as mpa_name,
-                   COUNT(l.user_id) as likes_count
-            FROM films f
-            LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.id
-            LEFT JOIN likes l ON f.id = l.film_id
-            GROUP BY f.id, m.id
-            ORDER BY likes_count DESC
-            LIMIT ?
-            """;
-        List<Film> films = jdbcTemplate.query(sql, filmMapper, count);
-        films.forEach(this::loadFilmData);
-        return films;
+        return getFilmsByIds(popularFilmsIndex.top(count));
+    }
+
+    @Override
+    public List<Film> searchFilms(String query, Set<FilmSearchIndex.Field> fields, int limit) {
+        return getFilmsByIds(searchIndex.search(query, fields, popularFilmsIndex::getLikes, limit));
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        return getPopularFilms(count, genreId, year, View.FULL);
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year, View view) {
+        return getFilmsByIds(popularFilmsIndex.top(count, genreId, year), view);
+    }
+
+    @Override
+    public List<Film> getTrendingFilms(int count, TrendingWindow window, View view) {
+        return getFilmsByIds(trendingIndex.top(window, count, System.currentTimeMillis()), view);
     }
 
     public List<MpaRating> getAllMpaRatings() {
-        String sql = "SELECT * FROM mpa_ratings ORDER BY id";
-        return jdbcTemplate.query(sql, mpaRatingMapper);
+        return referenceDataCache.getAllMpaRatings();
     }
 
     public MpaRating getMpaRatingById(Integer id) {
-        String sql = "SELECT * FROM mpa_ratings WHERE id = ?";
-        try {
-            return jdbcTemplate.queryForObject(sql, mpaRatingMapper, id);
-        } catch (EmptyResultDataAccessException e) {
+        MpaRating mpaRating = referenceDataCache.getMpaRating(id);
+        if (mpaRating == null) {
             throw new NotFoundException("Рейтинг MPA с id " + id + " не найден");
         }
+        return mpaRating;
     }
 
     public List<Genre> getAllGenres() {
-        String sql = "SELECT * FROM genres ORDER BY id";
-        return jdbcTemplate.query(sql, genreMapper);
+        return referenceDataCache.getAllGenres();
     }
 
     public Genre getGenreById(Integer id) {
-        String sql = "SELECT * FROM genres WHERE id = ?";
-        try {
-            return jdbcTemplate.queryForObject(sql, genreMapper, id);
-        } catch (EmptyResultDataAccessException e) {
+        Genre genre = referenceDataCache.getGenre(id);
+        if (genre == null) {
             throw new NotFoundException("Жанр с id " + id + " не найден");
         }
+        return genre;
+    }
+
+    private static Film copyOf(Film film) {
+        Film copy = new Film();
+        copy.setId(film.getId());
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        if (film.getMpa() != null) {
+            copy.setMpa(new MpaRating(film.getMpa().getId(), film.getMpa().getName()));
+        }
+        copy.setGenres(new LinkedHashSet<>(film.getGenres()));
+        copy.setLikes(new CompactLongSet(film.getLikes()));
+        return copy;
     }
 
     private void validateFilm(Film film) {
@@ -241,35 +682,129 @@ public class FilmDbStorage implements FilmStorage {
         }
     }
 
-    private void saveFilmGenres(Film film) {
+    /**
+     * Проверяет рейтинг по справочнику до записи, чтобы не разбирать нарушения ограничений базы:
+     * любое другое нарушение (например, слишком длинное название) пробрасывается как есть.
+     */
+    private void checkMpaExists(MpaRating mpa) {
+        if (mpa != null && mpa.getId() != null && referenceDataCache.getMpaRating(mpa.getId()) == null) {
+            log.warn("Рейтинг MPA с id {} не найден", mpa.getId());
+            throw new NotFoundException("Рейтинг MPA с id " + mpa.getId() + " не найден");
+        }
+    }
+
+    private static Set<Integer> genreIds(Film film) {
+        if (film.getGenres() == null) {
+            return Set.of();
+        }
+        return film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Сохраняет жанры фильма одним пакетом. Несуществующий жанр отвергается внешним ключом.
+     */
+    private void saveFilmGenres(Long filmId, Set<Integer> genreIds) {
+        if (genreIds.isEmpty()) {
+            return;
+        }
+        List<Object[]> batchArgs = genreIds.stream()
+                .map(genreId -> new Object[]{filmId, genreId})
+                .collect(Collectors.toList());
+        try {
+            jdbcTemplate.batchUpdate("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", batchArgs);
+        } catch (DataIntegrityViolationException e) {
+            throw new NotFoundException("Жанры не найдены");
+        }
+    }
+
+    /**
+     * Загружает фильмы по списку id, сохраняя порядок списка.
+     */
+    private List<Film> getFilmsByIds(List<Long> ids) {
+        return getFilmsByIds(ids, View.FULL);
+    }
+
+    private List<Film> getFilmsByIds(List<Long> ids, View view) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + IN_CLAUSE_BATCH_SIZE, ids.size()));
+            String sql = """
+            SELECT f.*, m.name as mpa_name
+            FROM films f
+            LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.id
+            WHERE f.id IN (%s)
+            """.formatted(String.join(",", Collections.nCopies(batch.size(), "?")));
 
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            List<Object[]> batchArgs = film.getGenres().stream()
-                    .map(genre -> new Object[]{film.getId(), genre.getId()})
-                    .collect(Collectors.toList());
-            jdbcTemplate.batchUpdate(
-                    "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)",
-                    batchArgs
-            );
+            jdbcTemplate.query(sql, filmMapper, batch.toArray()).forEach(film -> filmsById.put(film.getId(), film));
         }
+
+        List<Film> films = ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        loadFilmsData(films, view);
+        return films;
     }
 
     private void loadFilmData(Film film) {
         if (film == null) return;
+        loadFilmsData(List.of(film));
+    }
 
-        String genresSql = """
-        SELECT g.*
-        FROM genres g
-        JOIN film_genres fg ON g.id = fg.genre_id
-        WHERE fg.film_id = ?
-        ORDER BY g.id
-        """;
+    private void loadFilmsData(List<Film> films) {
+        loadFilmsData(films, View.FULL);
+    }
 
-        List<Genre> genres = jdbcTemplate.query(genresSql, genreMapper, film.getId());
-        film.setGenres(new LinkedHashSet<>(genres));
+    /**
+     * Загружает жанры и лайки сразу для всего списка фильмов: по одному запросу
+     * на каждую пачку из {@link #IN_CLAUSE_BATCH_SIZE} id вместо двух запросов на фильм.
+     * В сокращённом представлении лайки не читаются: их число берётся из рейтинга популярных фильмов.
+     */
+    private void loadFilmsData(List<Film> films, View view) {
+        if (films.isEmpty()) return;
+
+        boolean summary = view == View.SUMMARY;
+        Map<Long, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            film.setGenres(new LinkedHashSet<>());
+            if (summary) {
+                film.setLikes(null);
+                film.setLikesCount(popularFilmsIndex.getLikes(film.getId()));
+            } else {
+                film.setLikes(new CompactLongSet());
+            }
+            filmsById.put(film.getId(), film);
+        }
 
-        String sql = "SELECT user_id FROM likes WHERE film_id = ?";
-        List<Long> likes = jdbcTemplate.queryForList(sql, Long.class, film.getId());
-        film.setLikes(new HashSet<>(likes));
+        List<Long> ids = new ArrayList<>(filmsById.keySet());
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + IN_CLAUSE_BATCH_SIZE, ids.size()));
+            String inClause = String.join(",", Collections.nCopies(batch.size(), "?"));
+            Object[] args = batch.toArray();
+
+            String genresSql = "SELECT film_id, genre_id FROM film_genres WHERE film_id IN (" + inClause + ")"
+                    + " ORDER BY film_id, genre_id";
+            jdbcTemplate.query(genresSql, rs -> {
+                Genre genre = referenceDataCache.getGenre(rs.getInt("genre_id"));
+                if (genre != null) {
+                    filmsById.get(rs.getLong("film_id")).getGenres().add(genre);
+                }
+            }, args);
+            if (summary) {
+                continue;
+            }
+
+            String likesSql = "SELECT film_id, user_id FROM likes WHERE film_id IN (" + inClause + ")"
+                    + " ORDER BY film_id, user_id";
+            jdbcTemplate.query(likesSql, rs -> {
+                filmsById.get(rs.getLong("film_id")).getLikes().add(rs.getLong("user_id"));
+            }, args);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,309 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.SortedLongArrays;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Инвертированный индекс по названиям и описаниям фильмов для полнотекстового поиска.
+ *
+ * <p>Текст разбивается на слова по любым символам, кроме букв и цифр, и приводится к нижнему
+ * регистру с заменой «ё» на «е». Слово запроса совпадает со всеми словами индекса, которые
+ * с него начинаются («матр» находит «матрица»). Совпадение в названии весит больше, чем
+ * в описании; при равном весе выше фильмы с большим числом лайков.
+ *
+ * <p>При остановке индекс сохраняется в файл и при следующем запуске загружается из него,
+ * если число фильмов и максимальный id в базе не изменились. После загрузки файл удаляется,
+ * чтобы после аварийной остановки индекс гарантированно перестроился из базы.
+ * Пустой {@code filmorate.search.index-file} отключает сохранение.
+ */
+@Slf4j
+@Component
+public class FilmSearchIndex {
+    private static final int FILE_MAGIC = 0x46534958;
+    private static final int FILE_VERSION = 1;
+    private static final Locale RUSSIAN = Locale.forLanguageTag("ru");
+
+    public enum Field {
+        TITLE(2),
+        DESCRIPTION(1);
+
+        private final int weight;
+
+        Field(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private final Path file;
+    private final Map<Field, TreeMap<String, long[]>> postings = new EnumMap<>(Field.class);
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public FilmSearchIndex(@Value("${filmorate.search.index-file:}") String file) {
+        this.file = file.isBlank() ? null : Paths.get(file);
+        for (Field field : Field.values()) {
+            postings.put(field, new TreeMap<>());
+        }
+    }
+
+    /**
+     * Индексирует фильм, заменяя предыдущую версию.
+     */
+    public void index(long filmId, String title, String description) {
+        restore(filmId, new Document(tokenize(title), tokenize(description)));
+    }
+
+    /**
+     * Возвращает фильму ранее проиндексированный документ ({@code null} — удаляет фильм из индекса).
+     */
+    public void restore(long filmId, Document document) {
+        lock.writeLock().lock();
+        try {
+            Document previous = documents.remove(filmId);
+            if (previous != null) {
+                unindex(filmId, previous);
+            }
+            if (document != null) {
+                documents.put(filmId, document);
+                addPostings(Field.TITLE, filmId, document.titleTerms());
+                addPostings(Field.DESCRIPTION, filmId, document.descriptionTerms());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Документ фильма в индексе или {@code null}, если фильм не проиндексирован.
+     */
+    public Document getDocument(long filmId) {
+        lock.readLock().lock();
+        try {
+            return documents.get(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.values().forEach(Map::clear);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ищет фильмы, у которых хотя бы одно слово запроса совпадает с началом слова в выбранных полях.
+     *
+     * @param likes число лайков фильма — второй критерий ранжирования
+     * @return id фильмов в порядке убывания релевантности
+     */
+    public List<Long> search(String query, Set<Field> fields, LongToIntFunction likes, int limit) {
+        lock.readLock().lock();
+        try {
+            Map<Long, Integer> scores = new HashMap<>();
+            for (String term : new LinkedHashSet<>(tokenize(query))) {
+                Map<Long, Integer> termScores = new HashMap<>();
+                for (Field field : fields) {
+                    for (long[] filmIds : postings.get(field).subMap(term, term + Character.MAX_VALUE).values()) {
+                        for (long filmId : filmIds) {
+                            termScores.merge(filmId, field.weight, Math::max);
+                        }
+                    }
+                }
+                termScores.forEach((filmId, score) -> scores.merge(filmId, score, Integer::sum));
+            }
+
+            Comparator<Map.Entry<Long, Integer>> ranking = Map.Entry.<Long, Integer>comparingByValue().reversed();
+            ranking = ranking
+                    .thenComparing(entry -> likes.applyAsInt(entry.getKey()), Comparator.reverseOrder())
+                    .thenComparing(Map.Entry.comparingByKey());
+            return scores.entrySet().stream()
+                    .sorted(ranking)
+                    .limit(limit)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Загружает индекс из файла, если он построен для того же состояния таблицы films.
+     *
+     * @return {@code true}, если индекс загружен и перестраивать его не нужно
+     */
+    public boolean load(long filmsCount, long maxFilmId) {
+        if (file == null || !Files.exists(file)) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION
+                    || in.readLong() != filmsCount || in.readLong() != maxFilmId) {
+                log.info("Файл поискового индекса {} устарел, индекс будет перестроен", file);
+                return false;
+            }
+            documents.clear();
+            postings.values().forEach(Map::clear);
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                long filmId = in.readLong();
+                Document document = new Document(readTerms(in), readTerms(in));
+                documents.put(filmId, document);
+                addPostings(Field.TITLE, filmId, document.titleTerms());
+                addPostings(Field.DESCRIPTION, filmId, document.descriptionTerms());
+            }
+            log.info("Поисковый индекс загружен из {}: {} фильмов", file, size);
+            return true;
+        } catch (IOException e) {
+            log.warn("Не удалось прочитать поисковый индекс из {}: {}", file, e.getMessage());
+            documents.clear();
+            postings.values().forEach(Map::clear);
+            return false;
+        } finally {
+            deleteFile();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Сохраняет индекс в файл вместе с отпечатком таблицы films, для которого он построен.
+     */
+    public void save(long filmsCount, long maxFilmId) {
+        if (file == null) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeLong(filmsCount);
+                out.writeLong(maxFilmId);
+                out.writeInt(documents.size());
+                for (Map.Entry<Long, Document> entry : documents.entrySet()) {
+                    out.writeLong(entry.getKey());
+                    writeTerms(out, entry.getValue().titleTerms());
+                    writeTerms(out, entry.getValue().descriptionTerms());
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Поисковый индекс сохранён в {}: {} фильмов", file, documents.size());
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить поисковый индекс в {}: {}", file, e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Разбивает текст на уникальные слова в нижнем регистре; «ё» приравнивается к «е».
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        String normalized = text.toLowerCase(RUSSIAN).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                terms.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return List.copyOf(terms);
+    }
+
+    private void addPostings(Field field, long filmId, List<String> terms) {
+        TreeMap<String, long[]> fieldPostings = postings.get(field);
+        for (String term : terms) {
+            fieldPostings.merge(term, new long[]{filmId},
+                    (current, added) -> SortedLongArrays.insert(current, filmId));
+        }
+    }
+
+    private void unindex(long filmId, Document document) {
+        removePostings(Field.TITLE, filmId, document.titleTerms());
+        removePostings(Field.DESCRIPTION, filmId, document.descriptionTerms());
+    }
+
+    private void removePostings(Field field, long filmId, List<String> terms) {
+        TreeMap<String, long[]> fieldPostings = postings.get(field);
+        for (String term : terms) {
+            long[] remaining = SortedLongArrays.remove(fieldPostings.getOrDefault(term, SortedLongArrays.EMPTY),
+                    filmId);
+            if (remaining.length == 0) {
+                fieldPostings.remove(term);
+            } else {
+                fieldPostings.put(term, remaining);
+            }
+        }
+    }
+
+    private static List<String> readTerms(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> terms = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            terms.add(in.readUTF());
+        }
+        return terms;
+    }
+
+    private static void writeTerms(DataOutputStream out, List<String> terms) throws IOException {
+        out.writeInt(terms.size());
+        for (String term : terms) {
+            out.writeUTF(term);
+        }
+    }
+
+    private void deleteFile() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить файл поискового индекса {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Слова фильма по полям в том виде, в каком они лежат в индексе.
+     */
+    public record Document(List<String> titleTerms, List<String> descriptionTerms) {
+    }
+}
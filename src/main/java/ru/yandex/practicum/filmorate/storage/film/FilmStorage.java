@@ -1,9 +1,14 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
+import ru.yandex.practicum.filmorate.model.View;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
@@ -11,17 +16,84 @@ public interface FilmStorage {
 
     Film updateFilm(Film film);
 
-    boolean deleteFilm(Long id);
-
     Film getFilmById(Long id);
 
+    /**
+     * Версия фильма, которая увеличивается при каждом изменении его данных или лайков.
+     */
+    long getFilmVersion(Long id);
+
+    /**
+     * Версия рейтинга популярных фильмов: меняется при любом изменении рейтинга,
+     * в том числе после перезапуска приложения.
+     */
+    String getPopularFilmsVersion();
+
+    /**
+     * Лёгкая проверка существования фильма без загрузки жанров и лайков.
+     */
+    boolean filmExists(Long id);
+
     Collection<Film> getAllFilms();
 
+    /**
+     * Все фильмы; в сокращённом представлении вместо id лайков — только их число, таблица likes не читается.
+     */
+    Collection<Film> getAllFilms(View view);
+
+    /**
+     * Страница фильмов с id больше {@code afterId}, отсортированная по id.
+     */
+    List<Film> getFilms(long afterId, int limit);
+
+    List<Film> getFilms(long afterId, int limit, View view);
+
+    /**
+     * Последовательно передаёт все фильмы в {@code action}, читая таблицу страницами
+     * по {@code batchSize} записей, чтобы не держать весь каталог в памяти.
+     */
+    void forEachFilm(int batchSize, Consumer<Film> action);
+
     void addLike(Long filmId, Long userId);
 
+    /**
+     * Пакетно добавляет лайки. Уже существующие лайки (в том числе повторы внутри пакета)
+     * пропускаются без ошибок.
+     *
+     * @return для каждого элемента {@code likes} признак того, что лайк был добавлен
+     */
+    boolean[] addLikes(List<Like> likes);
+
+    Set<Long> findExistingFilmIds(Collection<Long> ids);
+
     void deleteLike(Long filmId, Long userId);
 
+    /**
+     * Фильмы, которые понравились пользователям с похожими лайками и которые
+     * {@code userId} ещё не лайкал, в порядке убывания релевантности.
+     */
+    List<Film> getRecommendedFilms(Long userId, int limit);
+
+    /**
+     * Полнотекстовый поиск по выбранным полям фильма: сначала фильмы с большим числом
+     * совпавших слов, затем с большим числом лайков.
+     */
+    List<Film> searchFilms(String query, Set<FilmSearchIndex.Field> fields, int limit);
+
     List<Film> getPopularFilms(int count);
+
+    /**
+     * Популярные фильмы с необязательными фильтрами по жанру и году выпуска
+     * ({@code null} — без фильтра).
+     */
+    List<Film> getPopularFilms(int count, Integer genreId, Integer year);
+
+    List<Film> getPopularFilms(int count, Integer genreId, Integer year, View view);
+
+    /**
+     * Фильмы с наибольшим числом лайков, поставленных за последнее окно {@code window}.
+     */
+    List<Film> getTrendingFilms(int count, TrendingWindow window, View view);
 }
 
 
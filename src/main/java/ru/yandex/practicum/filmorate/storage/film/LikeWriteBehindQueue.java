@@ -0,0 +1,329 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.InternalServerException;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Очередь отложенной записи лайков (write-behind).
+ *
+ * <p>Для каждой пары (фильм, пользователь) в очереди хранится не больше одной операции:
+ * повторная такая же операция игнорируется, а противоположная отменяет ожидающую
+ * (лайк и последующее удаление лайка взаимно уничтожаются). Фоновый поток раз в
+ * {@code flush-interval-ms} передаёт до {@code max-batch-size} операций в sink одной
+ * транзакцией. Если очередь заполнена, новые операции ждут освобождения места
+ * не дольше {@code offer-timeout-ms}, после чего запрос получает 503 с {@code Retry-After}.
+ *
+ * <p>Если пакет не записался, его операции записываются по одной, чтобы одна ошибочная операция
+ * (например, нарушение внешнего ключа) не задерживала остальные. Незаписанная операция возвращается
+ * в очередь; после {@code max-attempts} неудачных попыток она отбрасывается с записью в лог,
+ * а её изменение in-memory индексов отменяется через {@code rejected}.
+ *
+ * <p>При остановке очередь дописывается полностью, но только после завершения фонового потока,
+ * чтобы дописывание не пересеклось с его пакетом.
+ */
+@Slf4j
+@Component
+public class LikeWriteBehindQueue {
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long flushIntervalMs;
+    private final int maxBatchSize;
+    private final int capacity;
+    private final long offerTimeoutMs;
+    private final int maxAttempts;
+    private final boolean virtualThreads;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final LinkedHashMap<LikeKey, Boolean> pending = new LinkedHashMap<>();
+    private final Map<LikeKey, Boolean> inFlight = new HashMap<>();
+    private final Map<LikeKey, Integer> failedAttempts = new HashMap<>();
+    private long flushedGeneration;
+
+    private ScheduledExecutorService flusher;
+    private Consumer<List<LikeMutation>> sink;
+    private Consumer<LikeMutation> rejected;
+
+    public LikeWriteBehindQueue(TransactionTemplate transactionTemplate,
+                                @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                                @Value("${filmorate.likes.write-behind.flush-interval-ms:200}") long flushIntervalMs,
+                                @Value("${filmorate.likes.write-behind.max-batch-size:1000}") int maxBatchSize,
+                                @Value("${filmorate.likes.write-behind.capacity:100000}") int capacity,
+                                @Value("${filmorate.likes.write-behind.offer-timeout-ms:1000}") long offerTimeoutMs,
+                                @Value("${filmorate.likes.write-behind.max-attempts:5}") int maxAttempts,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxBatchSize = maxBatchSize;
+        this.capacity = capacity;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.maxAttempts = maxAttempts;
+        this.virtualThreads = virtualThreads;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param sink     записывает пакет операций; вызывается внутри транзакции
+     * @param rejected отменяет изменение индексов операцией, отброшенной после {@code max-attempts} попыток
+     */
+    public void start(Consumer<List<LikeMutation>> sink, Consumer<LikeMutation> rejected) {
+        this.sink = sink;
+        this.rejected = rejected;
+        ThreadFactory threadFactory = virtualThreads
+                ? Thread.ofVirtual().name("like-write-behind").factory()
+                : Thread.ofPlatform().name("like-write-behind").daemon().factory();
+        flusher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Отложенная запись лайков включена: интервал {} мс, пакет {}, ёмкость {}",
+                flushIntervalMs, maxBatchSize, capacity);
+    }
+
+    /**
+     * Ставит в очередь лайк ({@code like = true}) или его удаление.
+     *
+     * @param persisted текущее состояние пары в базе; вызывается вне блокировки
+     * @return {@code true}, если операция изменила итоговое состояние пары,
+     * и {@code false}, если пара уже находится в нужном состоянии
+     */
+    public boolean submit(long filmId, long userId, boolean like, BooleanSupplier persisted) {
+        LikeKey key = new LikeKey(filmId, userId);
+        while (true) {
+            long generation = currentGeneration();
+            boolean persistedState = persisted.getAsBoolean();
+
+            lock.lock();
+            try {
+                Boolean queued = pending.containsKey(key) ? pending.get(key) : inFlight.get(key);
+                if (queued == null && generation != flushedGeneration) {
+                    // Пока читали базу, очередной пакет был записан: состояние могло измениться.
+                    continue;
+                }
+                boolean current = queued != null ? queued : persistedState;
+                if (current == like) {
+                    return false;
+                }
+                if (pending.containsKey(key)) {
+                    pending.remove(key);
+                    notFull.signalAll();
+                    return true;
+                }
+                if (pending.size() >= capacity) {
+                    // Пока ждём места, очередь может измениться: после ожидания проверяем всё заново.
+                    awaitCapacity();
+                    continue;
+                }
+                pending.put(key, like);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Записывает очередной пакет операций.
+     *
+     * @return число операций, взятых из очереди
+     */
+    public int flush() {
+        List<LikeMutation> batch = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<Map.Entry<LikeKey, Boolean>> iterator = pending.entrySet().iterator();
+            while (batch.size() < maxBatchSize && iterator.hasNext()) {
+                Map.Entry<LikeKey, Boolean> entry = iterator.next();
+                batch.add(new LikeMutation(entry.getKey().filmId(), entry.getKey().userId(), entry.getValue()));
+                inFlight.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        List<LikeMutation> failed = batch;
+        try {
+            transactionTemplate.executeWithoutResult(status -> sink.accept(batch));
+            failed = List.of();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось записать пакет из {} операций с лайками: {}", batch.size(), e.getMessage());
+            failed = batch.size() > 1 ? writeSeparately(batch) : batch;
+        } finally {
+            complete(batch, failed);
+        }
+        return batch.size();
+    }
+
+    /**
+     * Записывает операции незаписавшегося пакета по одной.
+     *
+     * @return операции, которые не удалось записать
+     */
+    private List<LikeMutation> writeSeparately(List<LikeMutation> batch) {
+        List<LikeMutation> failed = new ArrayList<>();
+        for (LikeMutation mutation : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> sink.accept(List.of(mutation)));
+            } catch (RuntimeException e) {
+                log.warn("Не удалось записать операцию с лайком {}: {}", mutation, e.getMessage());
+                failed.add(mutation);
+            }
+        }
+        return failed;
+    }
+
+    public void shutdown() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        if (!awaitFlusher()) {
+            log.warn("Фоновая запись пакета лайков не завершилась за {} мс, ждём ещё",
+                    offerTimeoutMs + flushIntervalMs);
+            if (!awaitFlusher()) {
+                // Дописывать очередь параллельно с незавершённым пакетом нельзя: пакеты пересекутся.
+                log.error("Фоновая запись пакета лайков не завершилась, не записано {} операций", pendingCount());
+                return;
+            }
+        }
+
+        int flushed = 0;
+        try {
+            int written;
+            do {
+                written = flush();
+                flushed += written;
+            } while (written > 0);
+            log.info("Очередь лайков дописана при остановке: {} операций", flushed);
+        } catch (Exception e) {
+            log.error("Не удалось дописать очередь лайков при остановке, записано {} операций: {}",
+                    flushed, e.getMessage(), e);
+        }
+    }
+
+    private boolean awaitFlusher() {
+        try {
+            return flusher.awaitTermination(offerTimeoutMs + flushIntervalMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Ошибка записи пакета лайков: {}", e.getMessage(), e);
+        }
+    }
+
+    private void complete(List<LikeMutation> batch, List<LikeMutation> failed) {
+        Set<LikeMutation> notWritten = new HashSet<>(failed);
+        List<LikeMutation> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            flushedGeneration++;
+            for (LikeMutation mutation : batch) {
+                LikeKey key = new LikeKey(mutation.filmId(), mutation.userId());
+                // Снимаем только операции этого пакета: по той же паре может писаться другой пакет
+                // с противоположной операцией.
+                inFlight.remove(key, mutation.like());
+                if (!notWritten.contains(mutation)) {
+                    failedAttempts.remove(key);
+                }
+            }
+            for (LikeMutation mutation : failed) {
+                LikeKey key = new LikeKey(mutation.filmId(), mutation.userId());
+                // Операция не записана. Если по паре уже ждёт новая операция, она противоположна
+                // незаписанной, и обе взаимно отменяются.
+                if (pending.remove(key) != null) {
+                    failedAttempts.remove(key);
+                    continue;
+                }
+                int attempts = failedAttempts.getOrDefault(key, 0) + 1;
+                if (attempts >= maxAttempts) {
+                    failedAttempts.remove(key);
+                    dropped.add(mutation);
+                } else {
+                    failedAttempts.put(key, attempts);
+                    pending.put(key, mutation.like());
+                }
+            }
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (LikeMutation mutation : dropped) {
+            log.error("Операция с лайком {} отброшена после {} неудачных попыток записи", mutation, maxAttempts);
+            rejected.accept(mutation);
+        }
+    }
+
+    private long currentGeneration() {
+        lock.lock();
+        try {
+            return flushedGeneration;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void awaitCapacity() {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMs);
+        try {
+            while (pending.size() >= capacity) {
+                if (nanos <= 0) {
+                    throw new ServiceUnavailableException("очередь записи лайков переполнена",
+                            Math.max(1, TimeUnit.MILLISECONDS.toSeconds(flushIntervalMs + 999)));
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerException("Ожидание места в очереди лайков прервано");
+        }
+    }
+
+    public record LikeMutation(long filmId, long userId, boolean like) {
+    }
+
+    private record LikeKey(long filmId, long userId) {
+    }
+}
@@ -0,0 +1,187 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.Adjacency;
+import ru.yandex.practicum.filmorate.storage.SortedLongArrays;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.LongStream;
+
+/**
+ * Разреженная матрица «пользователь × фильм» из таблицы likes: для каждого пользователя
+ * хранится отсортированный массив id понравившихся фильмов, для каждого фильма — массив
+ * id поставивших лайк пользователей. Обновляется инкрементально при каждом лайке.
+ *
+ * <p>Рекомендации фильмов строятся по схеме коллаборативной фильтрации: находятся
+ * пользователи с наибольшим пересечением лайков, и предлагаются их фильмы, которые
+ * пользователь ещё не лайкал.
+ */
+@Component
+public class LikesMatrixIndex {
+    /**
+     * Сколько наиболее похожих пользователей участвует в подборе фильмов.
+     */
+    static final int NEIGHBOURS = 20;
+
+    /**
+     * Начиная с этого числа кандидатов похожесть считается параллельно на всех ядрах.
+     */
+    private static final int PARALLEL_THRESHOLD = 2_048;
+
+    private static final Comparator<Score> BEST_FIRST = Comparator.comparingLong(Score::score)
+            .reversed()
+            .thenComparingLong(Score::id);
+
+    private final Map<Long, long[]> filmsByUser = new HashMap<>();
+    private final Map<Long, long[]> usersByFilm = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void rebuild(Map<Long, long[]> likedFilmsByUser) {
+        lock.writeLock().lock();
+        try {
+            filmsByUser.clear();
+            usersByFilm.clear();
+            filmsByUser.putAll(likedFilmsByUser);
+            usersByFilm.putAll(Adjacency.invert(likedFilmsByUser));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addLike(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            filmsByUser.put(userId, SortedLongArrays.insert(films(userId), filmId));
+            usersByFilm.put(filmId, SortedLongArrays.insert(users(filmId), userId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeLike(long filmId, long userId) {
+        lock.writeLock().lock();
+        try {
+            putOrRemove(filmsByUser, userId, SortedLongArrays.remove(films(userId), filmId));
+            putOrRemove(usersByFilm, filmId, SortedLongArrays.remove(users(filmId), userId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Копия строк матрицы «пользователь → фильмы» для сохранения в снимок. Массивы общие
+     * с индексом, изменять их нельзя.
+     */
+    public Map<Long, long[]> getFilmsByUser() {
+        lock.readLock().lock();
+        try {
+            return new HashMap<>(filmsByUser);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Отсортированные id пользователей, лайкнувших фильм. Массив нельзя изменять.
+     */
+    public long[] getUsers(long filmId) {
+        lock.readLock().lock();
+        try {
+            return users(filmId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Фильмы, которые {@code userId} ещё не лайкал, отсортированные по суммарной похожести
+     * лайкнувших их соседей (при равенстве — по id).
+     */
+    public long[] recommendFilms(long userId, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] liked = films(userId);
+            if (liked.length == 0) {
+                return SortedLongArrays.EMPTY;
+            }
+
+            long[] candidates = candidateUsers(userId, liked);
+            Score[] scored = (candidates.length >= PARALLEL_THRESHOLD
+                    ? Arrays.stream(candidates).parallel()
+                    : Arrays.stream(candidates))
+                    .mapToObj(candidateId -> new Score(candidateId,
+                            SortedLongArrays.intersectionSize(liked, films(candidateId))))
+                    .toArray(Score[]::new);
+            Score[] neighbours = top(scored, NEIGHBOURS);
+
+            Map<Long, Long> filmScores = new HashMap<>();
+            for (Score neighbour : neighbours) {
+                for (long filmId : films(neighbour.id())) {
+                    if (!SortedLongArrays.contains(liked, filmId)) {
+                        filmScores.merge(filmId, neighbour.score(), Long::sum);
+                    }
+                }
+            }
+            Score[] films = filmScores.entrySet().stream()
+                    .map(entry -> new Score(entry.getKey(), entry.getValue()))
+                    .toArray(Score[]::new);
+            return Arrays.stream(top(films, limit)).mapToLong(Score::id).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Пользователи, у которых есть хотя бы один общий с {@code userId} лайк.
+     */
+    private long[] candidateUsers(long userId, long[] liked) {
+        return Arrays.stream(liked)
+                .flatMap(filmId -> LongStream.of(users(filmId)))
+                .filter(candidateId -> candidateId != userId)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    private static Score[] top(Score[] scores, int limit) {
+        PriorityQueue<Score> best = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+        for (Score score : scores) {
+            if (best.size() < limit) {
+                best.add(score);
+            } else if (BEST_FIRST.compare(score, best.peek()) < 0) {
+                best.poll();
+                best.add(score);
+            }
+        }
+        Score[] result = new Score[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll();
+        }
+        return result;
+    }
+
+    private long[] films(long userId) {
+        return filmsByUser.getOrDefault(userId, SortedLongArrays.EMPTY);
+    }
+
+    private long[] users(long filmId) {
+        return usersByFilm.getOrDefault(filmId, SortedLongArrays.EMPTY);
+    }
+
+    private static void putOrRemove(Map<Long, long[]> map, long key, long[] ids) {
+        if (ids.length == 0) {
+            map.remove(key);
+        } else {
+            map.put(key, ids);
+        }
+    }
+
+    private record Score(long id, long score) {
+    }
+}
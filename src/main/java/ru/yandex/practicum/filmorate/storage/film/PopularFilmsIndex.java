@@ -0,0 +1,253 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Рейтинг фильмов по числу лайков, который обновляется инкрементально при каждом
+ * лайке/удалении лайка. Выдача топ-N стоит O(N) и не требует обращения к таблице likes.
+ *
+ * <p>Помимо общего рейтинга поддерживаются отдельные рейтинги для каждого жанра, каждого
+ * года выпуска и каждой пары «жанр + год», поэтому выборка с фильтрами тоже стоит O(N).
+ *
+ * <p>Каждое изменение рейтинга увеличивает его версию, по которой строится ETag списка популярных
+ * фильмов. Счётчик начинается заново при каждом запуске, поэтому к нему добавляется время запуска.
+ */
+@Component
+public class PopularFilmsIndex {
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> ranking = new TreeSet<>(ORDER);
+    private final Map<Integer, NavigableSet<Entry>> rankingByGenre = new HashMap<>();
+    private final Map<Integer, NavigableSet<Entry>> rankingByYear = new HashMap<>();
+    private final Map<GenreYear, NavigableSet<Entry>> rankingByGenreAndYear = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long epoch = System.currentTimeMillis();
+    private volatile long version;
+
+    public void rebuild(Collection<FilmStats> films) {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            ranking.clear();
+            rankingByGenre.clear();
+            rankingByYear.clear();
+            rankingByGenreAndYear.clear();
+            version++;
+            films.forEach(film -> put(new Entry(film.filmId(), film.likes(), film.year(), Set.copyOf(film.genreIds()))));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Добавляет фильм или обновляет его год выпуска и жанры, сохраняя число лайков.
+     */
+    public void putFilm(long filmId, int year, Set<Integer> genreIds) {
+        lock.writeLock().lock();
+        try {
+            Entry current = entries.get(filmId);
+            if (current != null) {
+                remove(current);
+            }
+            put(new Entry(filmId, current != null ? current.likes() : 0, year, Set.copyOf(genreIds)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Заменяет данные фильма целиком, включая число лайков.
+     */
+    public void replaceFilm(FilmStats film) {
+        lock.writeLock().lock();
+        try {
+            Entry current = entries.get(film.filmId());
+            if (current != null) {
+                remove(current);
+            }
+            put(new Entry(film.filmId(), film.likes(), film.year(), Set.copyOf(film.genreIds())));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(long filmId) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(filmId);
+            if (entry != null) {
+                remove(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void adjustLikes(long filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            Entry current = entries.get(filmId);
+            if (current == null) {
+                return;
+            }
+            remove(current);
+            put(new Entry(filmId, Math.max(0, current.likes() + delta), current.year(), current.genreIds()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getLikes(long filmId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(filmId);
+            return entry != null ? entry.likes() : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Год выпуска и жанры фильма в индексе или {@code null}, если фильма нет.
+     */
+    public FilmStats getFilm(long filmId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(filmId);
+            return entry != null ? new FilmStats(filmId, entry.likes(), entry.year(), entry.genreIds()) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Данные всех фильмов индекса — для сохранения в снимок.
+     */
+    public List<FilmStats> getFilms() {
+        lock.readLock().lock();
+        try {
+            List<FilmStats> films = new ArrayList<>(entries.size());
+            for (Entry entry : entries.values()) {
+                films.add(new FilmStats(entry.filmId(), entry.likes(), entry.year(), entry.genreIds()));
+            }
+            return films;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Версия рейтинга: меняется при каждом изменении фильмов или лайков в индексе.
+     */
+    public String getVersion() {
+        return epoch + "." + version;
+    }
+
+    /**
+     * Меняет версию без изменения рейтинга — после коммита изменений, которые индекс учёл ещё
+     * до коммита, чтобы версия не указывала на данные, прочитанные из базы раньше времени.
+     */
+    public void touch() {
+        lock.writeLock().lock();
+        try {
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Long> top(int count) {
+        return top(count, null, null);
+    }
+
+    /**
+     * Топ фильмов с необязательными фильтрами по жанру и году выпуска.
+     */
+    public List<Long> top(int count, Integer genreId, Integer year) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> source;
+            if (genreId != null && year != null) {
+                source = rankingByGenreAndYear.get(new GenreYear(genreId, year));
+            } else if (genreId != null) {
+                source = rankingByGenre.get(genreId);
+            } else if (year != null) {
+                source = rankingByYear.get(year);
+            } else {
+                source = ranking;
+            }
+            if (source == null) {
+                return new ArrayList<>();
+            }
+
+            List<Long> result = new ArrayList<>(Math.min(Math.max(count, 0), source.size()));
+            Iterator<Entry> iterator = source.iterator();
+            while (result.size() < count && iterator.hasNext()) {
+                result.add(iterator.next().filmId());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(Entry entry) {
+        version++;
+        entries.put(entry.filmId(), entry);
+        ranking.add(entry);
+        rankingByYear.computeIfAbsent(entry.year(), key -> new TreeSet<>(ORDER)).add(entry);
+        for (Integer genreId : entry.genreIds()) {
+            rankingByGenre.computeIfAbsent(genreId, key -> new TreeSet<>(ORDER)).add(entry);
+            rankingByGenreAndYear.computeIfAbsent(new GenreYear(genreId, entry.year()), key -> new TreeSet<>(ORDER))
+                    .add(entry);
+        }
+    }
+
+    private void remove(Entry entry) {
+        version++;
+        entries.remove(entry.filmId());
+        ranking.remove(entry);
+        removeFrom(rankingByYear, entry.year(), entry);
+        for (Integer genreId : entry.genreIds()) {
+            removeFrom(rankingByGenre, genreId, entry);
+            removeFrom(rankingByGenreAndYear, new GenreYear(genreId, entry.year()), entry);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, NavigableSet<Entry>> rankings, K key, Entry entry) {
+        NavigableSet<Entry> set = rankings.get(key);
+        if (set != null) {
+            set.remove(entry);
+            if (set.isEmpty()) {
+                rankings.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Данные фильма, по которым строится рейтинг.
+     */
+    public record FilmStats(long filmId, int likes, int year, Set<Integer> genreIds) {
+    }
+
+    private record Entry(long filmId, int likes, int year, Set<Integer> genreIds) {
+    }
+
+    private record GenreYear(int genreId, int year) {
+    }
+}
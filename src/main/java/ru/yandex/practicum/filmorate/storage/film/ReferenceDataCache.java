@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MpaRating;
+import ru.yandex.practicum.filmorate.storage.film.mapper.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.film.mapper.MpaRowMapper;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Кэш справочников mpa_ratings и genres. Таблицы маленькие и практически не меняются,
+ * поэтому они целиком загружаются при старте в неизменяемый снимок с массивами,
+ * индексированными по id. Если справочники изменились в базе, кэш нужно
+ * перезагрузить вызовом {@link #invalidate()}.
+ *
+ * <p>Версия справочников — хеш их содержимого, поэтому она не меняется между запусками,
+ * пока не изменились сами данные.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReferenceDataCache {
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Snapshot snapshot;
+
+    @PostConstruct
+    public void invalidate() {
+        List<MpaRating> mpaRatings = jdbcTemplate.query("SELECT * FROM mpa_ratings ORDER BY id", new MpaRowMapper());
+        List<Genre> genres = jdbcTemplate.query("SELECT * FROM genres ORDER BY id", new GenreRowMapper());
+
+        MpaRating[] mpaById = new MpaRating[maxId(mpaRatings.stream().map(MpaRating::getId).toList()) + 1];
+        mpaRatings.forEach(mpa -> mpaById[mpa.getId()] = mpa);
+
+        Genre[] genresById = new Genre[maxId(genres.stream().map(Genre::getId).toList()) + 1];
+        genres.forEach(genre -> genresById[genre.getId()] = genre);
+
+        String version = Integer.toHexString(Objects.hash(mpaRatings, genres));
+        snapshot = new Snapshot(List.copyOf(mpaRatings), mpaById, List.copyOf(genres), genresById, version);
+        log.info("Загружены справочники: {} рейтингов MPA, {} жанров", mpaRatings.size(), genres.size());
+    }
+
+    public List<MpaRating> getAllMpaRatings() {
+        return snapshot.mpaRatings();
+    }
+
+    /**
+     * @return рейтинг MPA или {@code null}, если рейтинга с таким id нет
+     */
+    public MpaRating getMpaRating(Integer id) {
+        MpaRating[] mpaById = snapshot.mpaById();
+        return id != null && id >= 0 && id < mpaById.length ? mpaById[id] : null;
+    }
+
+    public List<Genre> getAllGenres() {
+        return snapshot.genres();
+    }
+
+    /**
+     * @return жанр или {@code null}, если жанра с таким id нет
+     */
+    public Genre getGenre(Integer id) {
+        Genre[] genresById = snapshot.genresById();
+        return id != null && id >= 0 && id < genresById.length ? genresById[id] : null;
+    }
+
+    public String getVersion() {
+        return snapshot.version();
+    }
+
+    private static int maxId(List<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    private record Snapshot(List<MpaRating> mpaRatings, MpaRating[] mpaById, List<Genre> genres, Genre[] genresById,
+                            String version) {
+    }
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.CompactLongSet;
+import ru.yandex.practicum.filmorate.model.TrendingWindow;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Лайки за последнюю неделю, разложенные по кольцу пятиминутных корзин. Каждая корзина хранит
+ * пользователей, поставивших лайк фильму за её пять минут; корзина, вышедшая за неделю, переиспользуется
+ * под новый интервал. Топ за окно собирается слиянием корзин окна, поэтому стоит O(лайков в окне)
+ * и не требует выборки из таблицы likes по диапазону времени. Граница окна точна до одной корзины.
+ *
+ * <p>Снятый лайк удаляется из той корзины, в которую попал, поэтому тренды считают лайки, которые
+ * поставлены в окне и не сняты.
+ */
+@Component
+public class TrendingFilmsIndex {
+    static final long BUCKET_MILLIS = Duration.ofMinutes(5).toMillis();
+    private static final int BUCKETS = (int) (TrendingWindow.WEEK.getDuration().toMillis() / BUCKET_MILLIS);
+    private static final Comparator<Map.Entry<Long, Integer>> ORDER =
+            Map.Entry.<Long, Integer>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.<Long, Integer>comparingByKey());
+
+    private final Bucket[] ring = new Bucket[BUCKETS];
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(ring, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Учитывает лайк, поставленный в момент {@code time}. Лайки старше недели отбрасываются.
+     */
+    public void addLike(long filmId, long userId, long time) {
+        long number = time / BUCKET_MILLIS;
+        if (number <= System.currentTimeMillis() / BUCKET_MILLIS - BUCKETS) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            int slot = (int) (number % BUCKETS);
+            Bucket bucket = ring[slot];
+            if (bucket == null || bucket.number < number) {
+                bucket = new Bucket(number);
+                ring[slot] = bucket;
+            } else if (bucket.number > number) {
+                return;
+            }
+            bucket.usersByFilm.computeIfAbsent(filmId, id -> new CompactLongSet()).add(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Убирает лайк из корзины, в которую он попал.
+     *
+     * @return начало интервала этой корзины или {@code -1}, если лайк поставлен больше недели назад
+     */
+    public long removeLike(long filmId, long userId, long now) {
+        long oldest = now / BUCKET_MILLIS - BUCKETS + 1;
+        lock.writeLock().lock();
+        try {
+            for (Bucket bucket : ring) {
+                if (bucket == null || bucket.number < oldest) {
+                    continue;
+                }
+                CompactLongSet users = bucket.usersByFilm.get(filmId);
+                if (users != null && users.remove(userId)) {
+                    if (users.isEmpty()) {
+                        bucket.usersByFilm.remove(filmId);
+                    }
+                    return bucket.number * BUCKET_MILLIS;
+                }
+            }
+            return -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Фильмы с наибольшим числом лайков за окно, заканчивающееся в {@code now}; при равенстве —
+     * с меньшим id.
+     */
+    public List<Long> top(TrendingWindow window, int count, long now) {
+        long newest = now / BUCKET_MILLIS;
+        long oldest = newest - window.getDuration().toMillis() / BUCKET_MILLIS + 1;
+        Map<Long, Integer> likes = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (long number = oldest; number <= newest; number++) {
+                Bucket bucket = ring[(int) (number % BUCKETS)];
+                if (bucket != null && bucket.number == number) {
+                    bucket.usersByFilm.forEach((filmId, users) -> likes.merge(filmId, users.size(), Integer::sum));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        PriorityQueue<Map.Entry<Long, Integer>> best = new PriorityQueue<>(ORDER.reversed());
+        for (Map.Entry<Long, Integer> entry : likes.entrySet()) {
+            best.add(entry);
+            if (best.size() > count) {
+                best.poll();
+            }
+        }
+        List<Long> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll().getKey());
+        }
+        return result.reversed();
+    }
+
+    private static final class Bucket {
+        private final long number;
+        private final Map<Long, CompactLongSet> usersByFilm = new HashMap<>();
+
+        private Bucket(long number) {
+            this.number = number;
+        }
+    }
+}
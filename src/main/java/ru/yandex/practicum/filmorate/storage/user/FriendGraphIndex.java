@@ -0,0 +1,217 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.Adjacency;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+import ru.yandex.practicum.filmorate.storage.SortedLongArrays;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Граф дружбы в памяти: для каждого пользователя хранится отсортированный массив id тех,
+ * кого он добавил в друзья (строки таблицы friendships с его user_id). Проверка дружбы —
+ * бинарный поиск, общие друзья — линейное пересечение двух массивов.
+ *
+ * <p>Рекомендации друзей считаются обходом графа на глубину 2 и кэшируются по пользователю.
+ * Для инвалидации хранится и обратная смежность: при изменении списка друзей пользователя A
+ * сбрасываются рекомендации самого A и всех, у кого A в друзьях.
+ */
+@Component
+public class FriendGraphIndex {
+    public static final int MAX_RECOMMENDATIONS = 100;
+
+    private static final Comparator<Candidate> BEST_FIRST = Comparator.comparingInt(Candidate::mutualFriends)
+            .reversed()
+            .thenComparingLong(Candidate::userId);
+
+    private final Map<Long, long[]> friendsByUser = new HashMap<>();
+    private final Map<Long, long[]> followersByUser = new HashMap<>();
+    private final EntityCache<Long, long[]> recommendations;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public FriendGraphIndex(
+            @Value("${filmorate.cache.friend-recommendations.max-weight:1000000}") long recommendationsMaxWeight) {
+        this.recommendations = new EntityCache<>(recommendationsMaxWeight, ids -> 1L + ids.length, long[]::clone);
+    }
+
+    public void rebuild(Map<Long, long[]> adjacency) {
+        lock.writeLock().lock();
+        try {
+            friendsByUser.clear();
+            followersByUser.clear();
+            friendsByUser.putAll(adjacency);
+            followersByUser.putAll(Adjacency.invert(adjacency));
+            recommendations.invalidateAll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addEdge(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            friendsByUser.put(userId, SortedLongArrays.insert(friends(userId), friendId));
+            followersByUser.put(friendId, SortedLongArrays.insert(followers(friendId), userId));
+            invalidateRecommendations(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeEdge(long userId, long friendId) {
+        lock.writeLock().lock();
+        try {
+            putOrRemove(friendsByUser, userId, SortedLongArrays.remove(friends(userId), friendId));
+            putOrRemove(followersByUser, friendId, SortedLongArrays.remove(followers(friendId), userId));
+            invalidateRecommendations(userId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Копия списков смежности для сохранения в снимок. Массивы общие с индексом, изменять их нельзя.
+     */
+    public Map<Long, long[]> getAdjacency() {
+        lock.readLock().lock();
+        try {
+            return new HashMap<>(friendsByUser);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean hasEdge(long userId, long friendId) {
+        lock.readLock().lock();
+        try {
+            return SortedLongArrays.contains(friends(userId), friendId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает отсортированные id друзей. Массивы в индексе не изменяются на месте,
+     * поэтому результат можно читать без блокировки, но модифицировать нельзя.
+     */
+    public long[] getFriends(long userId) {
+        lock.readLock().lock();
+        try {
+            return friends(userId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long[] getCommonFriends(long userId, long otherId) {
+        lock.readLock().lock();
+        try {
+            return SortedLongArrays.intersect(friends(userId), friends(otherId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Пользователи, не являющиеся друзьями {@code userId}, отсортированные по убыванию числа
+     * общих друзей (при равенстве — по id). Возвращается не больше {@code limit} id,
+     * {@code limit} не должен превышать {@link #MAX_RECOMMENDATIONS}.
+     */
+    public long[] recommendFriends(long userId, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] ranked = recommendations.get(userId);
+            if (ranked == null) {
+                ranked = computeRecommendations(userId);
+                recommendations.put(userId, ranked, recommendations.stamp());
+            }
+            return ranked.length <= limit ? ranked : Arrays.copyOf(ranked, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public EntityCache.Stats getRecommendationCacheStats() {
+        return recommendations.getStats();
+    }
+
+    /**
+     * Собирает всех друзей друзей в один массив, сортирует его и считает повторы — число
+     * повторов id равно числу общих друзей. Лучшие кандидаты отбираются кучей размера
+     * {@link #MAX_RECOMMENDATIONS}, поэтому полная сортировка кандидатов не нужна.
+     */
+    private long[] computeRecommendations(long userId) {
+        long[] friends = friends(userId);
+        int total = 0;
+        for (long friendId : friends) {
+            total += friends(friendId).length;
+        }
+
+        long[] candidates = new long[total];
+        int size = 0;
+        for (long friendId : friends) {
+            for (long candidateId : friends(friendId)) {
+                if (candidateId != userId && !SortedLongArrays.contains(friends, candidateId)) {
+                    candidates[size++] = candidateId;
+                }
+            }
+        }
+        Arrays.sort(candidates, 0, size);
+
+        PriorityQueue<Candidate> best = new PriorityQueue<>(MAX_RECOMMENDATIONS + 1, BEST_FIRST.reversed());
+        int from = 0;
+        while (from < size) {
+            int to = from + 1;
+            while (to < size && candidates[to] == candidates[from]) {
+                to++;
+            }
+            Candidate candidate = new Candidate(candidates[from], to - from);
+            if (best.size() < MAX_RECOMMENDATIONS) {
+                best.add(candidate);
+            } else if (BEST_FIRST.compare(candidate, best.peek()) < 0) {
+                best.poll();
+                best.add(candidate);
+            }
+            from = to;
+        }
+
+        long[] ranked = new long[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = best.poll().userId();
+        }
+        return ranked;
+    }
+
+    private void invalidateRecommendations(long userId) {
+        recommendations.invalidate(userId);
+        for (long followerId : followers(userId)) {
+            recommendations.invalidate(followerId);
+        }
+    }
+
+    private long[] friends(long userId) {
+        return friendsByUser.getOrDefault(userId, SortedLongArrays.EMPTY);
+    }
+
+    private long[] followers(long userId) {
+        return followersByUser.getOrDefault(userId, SortedLongArrays.EMPTY);
+    }
+
+    private static void putOrRemove(Map<Long, long[]> map, long key, long[] ids) {
+        if (ids.length == 0) {
+            map.remove(key);
+        } else {
+            map.put(key, ids);
+        }
+    }
+
+    private record Candidate(long userId, int mutualFriends) {
+    }
+}
@@ -1,22 +1,33 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.CompactFriendMap;
 import ru.yandex.practicum.filmorate.model.FriendshipStatus;
+import ru.yandex.practicum.filmorate.storage.Adjacency;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+import ru.yandex.practicum.filmorate.storage.IndexTransactions;
+import ru.yandex.practicum.filmorate.storage.ReadModelSnapshot;
 import ru.yandex.practicum.filmorate.storage.user.mapper.UserRowMapper;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.View;
 
 import java.sql.PreparedStatement;
 import java.sql.Date;
 import java.sql.Statement;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Repository
 @Slf4j
@@ -25,11 +36,39 @@ public class UserDbStorage implements UserStorage {
 
     private final JdbcTemplate jdbcTemplate;
     private final UserRowMapper userMapper;
+    private final EntityCache<Long, User> userCache;
+    private final FriendGraphIndex friendGraph;
+    private final ReadModelSnapshot readModelSnapshot;
+
+    private static final int IN_CLAUSE_BATCH_SIZE = 1000;
+    private static final String INSERT_FRIENDSHIP_SQL = """
+            INSERT INTO friendships (user_id, friend_id, status)
+            SELECT ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM friendships WHERE user_id = ? AND friend_id = ?)
+            """;
 
     @Autowired
-    public UserDbStorage(JdbcTemplate jdbcTemplate) {
+    public UserDbStorage(JdbcTemplate jdbcTemplate, FriendGraphIndex friendGraph, ReadModelSnapshot readModelSnapshot,
+                         @Value("${filmorate.cache.users.max-weight:1000000}") long userCacheMaxWeight) {
         this.jdbcTemplate = jdbcTemplate;
         this.userMapper = new UserRowMapper();
+        this.friendGraph = friendGraph;
+        this.readModelSnapshot = readModelSnapshot;
+        this.userCache = new EntityCache<>(userCacheMaxWeight,
+                user -> 1L + user.getFriends().size(),
+                UserDbStorage::copyOf);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (readModelSnapshot.restoreFriends()) {
+            return;
+        }
+        String sql = "SELECT user_id, friend_id FROM friendships ORDER BY user_id, friend_id";
+        Map<Long, long[]> adjacency = jdbcTemplate.query(sql, rs -> {
+            return Adjacency.read(rs, "user_id", "friend_id");
+        });
+        friendGraph.rebuild(adjacency);
+        log.info("Граф дружбы построен для {} пользователей", adjacency.size());
     }
 
     @Override
@@ -74,9 +113,16 @@ public class UserDbStorage implements UserStorage {
     public User getUserById(Long id) {
         String sql = "SELECT * FROM users WHERE id = ?";
 
+        User cached = userCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        long stamp = userCache.stamp();
         try {
             User user = jdbcTemplate.queryForObject(sql, userMapper, id);
             loadUserFriends(user);
+            userCache.put(id, user, stamp);
             return user;
         } catch (EmptyResultDataAccessException e) {
             log.warn("Пользователь с id {} не найден ", id);
@@ -87,14 +133,74 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    @Override
+    public long getUserVersion(Long id) {
+        try {
+            Long version = jdbcTemplate.queryForObject("SELECT version FROM users WHERE id = ?", Long.class, id);
+            return version != null ? version : 0;
+        } catch (EmptyResultDataAccessException e) {
+            throw new NotFoundException("Пользователь с id " + id + " не найден");
+        }
+    }
+
+    @Override
+    public boolean userExists(Long id) {
+        if (id == null) {
+            return false;
+        }
+        if (userCache.contains(id)) {
+            return true;
+        }
+        String sql = "SELECT EXISTS (SELECT 1 FROM users WHERE id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+    }
+
+    @Override
+    public Set<Long> findExistingUserIds(Collection<Long> ids) {
+        Set<Long> existing = new HashSet<>();
+        List<Long> idList = new ArrayList<>(ids);
+        for (int from = 0; from < idList.size(); from += IN_CLAUSE_BATCH_SIZE) {
+            List<Long> batch = idList.subList(from, Math.min(from + IN_CLAUSE_BATCH_SIZE, idList.size()));
+            String sql = "SELECT id FROM users WHERE id IN ("
+                    + String.join(",", Collections.nCopies(batch.size(), "?")) + ")";
+            existing.addAll(jdbcTemplate.queryForList(sql, Long.class, batch.toArray()));
+        }
+        return existing;
+    }
+
+    public EntityCache.Stats getUserCacheStats() {
+        return userCache.getStats();
+    }
+
     @Override
     public Collection<User> getAllUsers() {
         String sql = "SELECT * FROM users ORDER BY id";
         List<User> users = jdbcTemplate.query(sql, userMapper);
-        users.forEach(this::loadUserFriends);
+        loadUsersFriends(users);
+        return users;
+    }
+
+    @Override
+    public List<User> getUsers(long afterId, int limit) {
+        String sql = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        List<User> users = jdbcTemplate.query(sql, userMapper, afterId, limit);
+        loadUsersFriends(users);
         return users;
     }
 
+    @Override
+    public void forEachUser(int batchSize, Consumer<User> action) {
+        long afterId = 0;
+        List<User> page;
+        do {
+            page = getUsers(afterId, batchSize);
+            page.forEach(action);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == batchSize);
+    }
+
     @Override
     public User updateUser(User user) {
 
@@ -105,7 +211,7 @@ public class UserDbStorage implements UserStorage {
 
         String sql = """
                 UPDATE users
-                SET login = ?, email = ?, name = ?, birthday = ?
+                SET login = ?, email = ?, name = ?, birthday = ?, version = version + 1
                 WHERE id = ?
                 """;
 
@@ -117,6 +223,7 @@ public class UserDbStorage implements UserStorage {
                     user.getBirthday(),
                     user.getId()
             );
+            IndexTransactions.invalidate(() -> userCache.invalidate(user.getId()));
 
             log.info("Обновлён пользователь с id={}:", user.getId());
             return getUserById(user.getId());
@@ -127,10 +234,16 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    @Transactional
     public void deleteFriend(Long userId, Long friendId) {
         String sql = "DELETE FROM friendships WHERE user_id = ? AND friend_id = ?";
         try {
-            jdbcTemplate.update(sql, userId, friendId);
+            if (jdbcTemplate.update(sql, userId, friendId) > 0) {
+                touchUser(userId);
+                IndexTransactions.apply(() -> friendGraph.removeEdge(userId, friendId),
+                        () -> friendGraph.addEdge(userId, friendId));
+            }
+            IndexTransactions.invalidate(() -> userCache.invalidate(userId));
             log.info("Удален друг {} у пользователя {}", friendId, userId);
         } catch (Exception e) {
             log.error("Error removing friend {} from user {}: {}", friendId, userId, e.getMessage(), e);
@@ -138,59 +251,119 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setLogin(user.getLogin());
+        copy.setEmail(user.getEmail());
+        copy.setName(user.getName());
+        copy.setBirthday(user.getBirthday());
+        copy.setFriends(new CompactFriendMap(user.getFriends()));
+        return copy;
+    }
+
     private void loadUserFriends(User user) {
         if (user == null) {
             log.warn("Пользователь не найден");
             return;
         }
+        loadUsersFriends(List.of(user));
+    }
 
-        String sql = """
-                SELECT friend_id
-                FROM friendships
-                WHERE user_id = ?
-                """;
+    private void loadUsersFriends(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
 
-        try {
-            jdbcTemplate.query(sql, rs -> {
-                Long friendId = rs.getLong("friend_id");
-                String status = rs.getString("status");
-                user.getFriends().put(friendId, FriendshipStatus.valueOf(status));
-            }, user.getId());
-            log.debug("Загружены {} друзья для пользователя с id: {}", user.getFriends().size(), user.getId());
-        } catch (Exception e) {
-            log.error("Ошибка добавления друзей для пользователя с id {}: {}", user.getId(), e.getMessage(), e);
+        Map<Long, User> usersById = new HashMap<>();
+        users.forEach(user -> usersById.put(user.getId(), user));
+
+        List<Long> ids = new ArrayList<>(usersById.keySet());
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + IN_CLAUSE_BATCH_SIZE, ids.size()));
+            String sql = "SELECT user_id, friend_id, status FROM friendships WHERE user_id IN ("
+                    + String.join(",", Collections.nCopies(batch.size(), "?")) + ") ORDER BY user_id, friend_id";
+
+            try {
+                jdbcTemplate.query(sql, rs -> {
+                    User user = usersById.get(rs.getLong("user_id"));
+                    user.getFriends().put(rs.getLong("friend_id"), FriendshipStatus.valueOf(rs.getString("status")));
+                }, batch.toArray());
+            } catch (Exception e) {
+                log.error("Ошибка загрузки друзей для пользователей {}: {}", batch, e.getMessage(), e);
+            }
         }
+        log.debug("Загружены друзья для {} пользователей", users.size());
     }
 
     @Override
+    @Transactional
     public void addFriend(Long userId, Long friendId, FriendshipStatus status) {
-        String sql = "INSERT INTO friendships (user_id, friend_id, status) VALUES (?, ?, ?)";
-        try {
-            jdbcTemplate.update(sql, userId, friendId, status.toString());
+        saveFriendship(userId, friendId, status);
+        if (status == FriendshipStatus.CONFIRMED) {
+            saveFriendship(friendId, userId, status);
+            touchUser(friendId);
+        }
+        touchUser(userId);
+        IndexTransactions.invalidate(() -> {
+            userCache.invalidate(userId);
+            userCache.invalidate(friendId);
+        });
+        log.info("Друг добавлен {} пользователю {} со статусом {}", friendId, userId, status);
+    }
 
-            if (status == FriendshipStatus.CONFIRMED) {
-                jdbcTemplate.update(sql, friendId, userId, status.toString());
-            }
-            log.info("Друг добавлен {} пользователю {} со статусом {}", friendId, userId, status);
-        } catch (Exception e) {
-            sql = "UPDATE friendships SET status = ? WHERE user_id = ? AND friend_id = ?";
-            jdbcTemplate.update(sql, status.toString(), userId, friendId);
+    /**
+     * Записывает дружбу или меняет статус уже записанной. Ребро графа добавляется только после того,
+     * как строка действительно вставлена.
+     */
+    private void saveFriendship(Long userId, Long friendId, FriendshipStatus status) {
+        int inserted;
+        try {
+            inserted = jdbcTemplate.update(INSERT_FRIENDSHIP_SQL, userId, friendId, status.toString(), userId, friendId);
+        } catch (DuplicateKeyException e) {
+            inserted = 0;
         }
+        if (inserted > 0) {
+            addFriendEdge(userId, friendId);
+        } else {
+            jdbcTemplate.update("UPDATE friendships SET status = ? WHERE user_id = ? AND friend_id = ?",
+                    status.toString(), userId, friendId);
+        }
+    }
+
+    /**
+     * Увеличивает версию пользователя, чтобы ETag его представления сменился вместе со списком друзей.
+     */
+    private void touchUser(Long userId) {
+        jdbcTemplate.update("UPDATE users SET version = version + 1 WHERE id = ?", userId);
     }
 
 
+    private void addFriendEdge(Long userId, Long friendId) {
+        IndexTransactions.apply(() -> friendGraph.addEdge(userId, friendId),
+                () -> friendGraph.removeEdge(userId, friendId));
+    }
+
+    @Override
+    public boolean hasFriend(Long userId, Long friendId) {
+        return friendGraph.hasEdge(userId, friendId);
+    }
+
     @Override
     public List<User> getFriends(Long userId) {
-        String sql = """
-                SELECT u.*
-                FROM users u
-                JOIN friendships f ON u.id = f.friend_id
-                WHERE f.user_id = ?
-                ORDER BY u.id
-                """;
+        return getFriends(userId, View.FULL);
+    }
 
+    @Override
+    public List<User> getFriends(Long userId, View view) {
         try {
-            List<User> friends = jdbcTemplate.query(sql, userMapper, userId);
+            List<User> friends = getUsersByIds(friendGraph.getFriends(userId));
+            if (view == View.SUMMARY) {
+                for (User friend : friends) {
+                    friend.setFriends(null);
+                    friend.setFriendsCount(friendGraph.getFriends(friend.getId()).length);
+                }
+            }
             return friends;
         } catch (Exception e) {
             log.error("Ошибка получения друзей для пользователя id {}: {}", userId, e.getMessage(), e);
@@ -200,22 +373,43 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public List<User> getCommonFriends(Long userId, Long otherId) {
-        String sql = """
-            SELECT u.*
-            FROM users u
-            JOIN friendships f1 ON u.id = f1.friend_id
-            JOIN friendships f2 ON u.id = f2.friend_id
-            WHERE f1.user_id = ? AND f2.user_id = ?
-            ORDER BY u.id
-            """;
-
         try {
-            List<User> commonFriends = jdbcTemplate.query(sql, userMapper, userId, otherId);
-            return commonFriends;
+            return getUsersByIds(friendGraph.getCommonFriends(userId, otherId));
         } catch (Exception e) {
             log.error("Ошибка получения общих друзей для пользователей {} и {}: {}", userId, otherId, e.getMessage(), e);
             throw e;
         }
     }
+
+    @Override
+    public List<User> getFriendRecommendations(Long userId, int limit) {
+        return getUsersByIds(friendGraph.recommendFriends(userId, limit));
+    }
+
+    /**
+     * Загружает пользователей (без списков друзей) по массиву id, сохраняя порядок массива.
+     */
+    private List<User> getUsersByIds(long[] ids) {
+        Map<Long, User> usersById = new HashMap<>();
+        for (int from = 0; from < ids.length; from += IN_CLAUSE_BATCH_SIZE) {
+            int to = Math.min(from + IN_CLAUSE_BATCH_SIZE, ids.length);
+            Object[] batch = Arrays.stream(ids, from, to).boxed().toArray();
+            String sql = "SELECT * FROM users WHERE id IN ("
+                    + String.join(",", Collections.nCopies(batch.length, "?")) + ")";
+            jdbcTemplate.query(sql, userMapper, batch).forEach(user -> usersById.put(user.getId(), user));
+        }
+        List<User> users = new ArrayList<>(usersById.size());
+        for (long id : ids) {
+            User user = usersById.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    public EntityCache.Stats getFriendRecommendationCacheStats() {
+        return friendGraph.getRecommendationCacheStats();
+    }
 }
 
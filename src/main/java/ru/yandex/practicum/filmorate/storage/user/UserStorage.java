@@ -2,9 +2,12 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import ru.yandex.practicum.filmorate.model.FriendshipStatus;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.View;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     User addUser(User user);
@@ -15,12 +18,51 @@ public interface UserStorage {
 
     User getUserById(Long id);
 
+    /**
+     * Версия пользователя, которая увеличивается при каждом изменении его данных или списка друзей.
+     */
+    long getUserVersion(Long id);
+
+    /**
+     * Лёгкая проверка существования пользователя без загрузки друзей.
+     */
+    boolean userExists(Long id);
+
+    Set<Long> findExistingUserIds(Collection<Long> ids);
+
     Collection<User> getAllUsers();
 
+    /**
+     * Страница пользователей с id больше {@code afterId}, отсортированная по id.
+     */
+    List<User> getUsers(long afterId, int limit);
+
+    /**
+     * Последовательно передаёт всех пользователей в {@code action}, читая таблицу страницами
+     * по {@code batchSize} записей.
+     */
+    void forEachUser(int batchSize, Consumer<User> action);
+
+    /**
+     * Проверяет, добавил ли {@code userId} пользователя {@code friendId} в друзья.
+     */
+    boolean hasFriend(Long userId, Long friendId);
+
     List<User> getFriends(Long userId);
 
+    /**
+     * Друзья пользователя; в сокращённом представлении у каждого друга вместо списка его друзей — их число.
+     */
+    List<User> getFriends(Long userId, View view);
+
     List<User> getCommonFriends(Long userId1, Long otherId);
 
+    /**
+     * Пользователи, которых стоит предложить в друзья {@code userId}: не его друзья,
+     * отсортированные по убыванию числа общих друзей.
+     */
+    List<User> getFriendRecommendations(Long userId, int limit);
+
     void addFriend(Long userId, Long friendId, FriendshipStatus status);
 
     void deleteFriend(Long userId, Long friendId);
@@ -13,6 +13,8 @@ CREATE TABLE IF NOT EXISTS films(
     release_date DATE NOT NULL,
     duration INTEGER NOT NULL,
     mpa_rating_id INTEGER,
+    likes_count INTEGER DEFAULT 0 NOT NULL,
+    version BIGINT DEFAULT 0 NOT NULL,
     FOREIGN KEY (mpa_rating_id) REFERENCES mpa_ratings(id)
 );
 
@@ -21,7 +23,8 @@ CREATE TABLE IF NOT EXISTS users(
     login VARCHAR(255) NOT NULL ,
     email VARCHAR(255) NOT NULL ,
     name VARCHAR(255),
-    birthday DATE
+    birthday DATE,
+    version BIGINT DEFAULT 0 NOT NULL
 );
 CREATE TABLE IF NOT EXISTS film_genres(
     film_id INTEGER NOT NULL,
@@ -33,6 +36,7 @@ CREATE TABLE IF NOT EXISTS film_genres(
 CREATE TABLE IF NOT EXISTS likes(
     film_id INTEGER NOT NULL ,
     user_id INTEGER NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
     PRIMARY KEY (film_id,user_id),
     FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
@@ -46,3 +50,56 @@ CREATE TABLE IF NOT EXISTS friendships(
     FOREIGN KEY (friend_id) REFERENCES users(id) ON DELETE CASCADE
 );
 
+-- Счётчик лайков для баз, созданных до появления колонки: заполняется один раз
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count INTEGER;
+UPDATE films f SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id) WHERE likes_count IS NULL;
+ALTER TABLE films ALTER COLUMN likes_count SET DEFAULT 0;
+ALTER TABLE films ALTER COLUMN likes_count SET NOT NULL;
+
+-- Версии фильмов и пользователей для ETag: увеличиваются при каждом изменении представления
+ALTER TABLE films ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+
+-- Время лайка для трендов; лайкам, поставленным до появления колонки, время неизвестно, и они получают
+-- время вне любого окна трендов, чтобы после миграции тренды не совпадали с рейтингом за всё время
+ALTER TABLE likes ADD COLUMN IF NOT EXISTS created_at TIMESTAMP;
+UPDATE likes SET created_at = TIMESTAMP '1970-01-01 00:00:00' WHERE created_at IS NULL;
+ALTER TABLE likes ALTER COLUMN created_at SET DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE likes ALTER COLUMN created_at SET NOT NULL;
+
+-- Индексы для выборок популярных фильмов по жанру и году выпуска
+CREATE INDEX IF NOT EXISTS idx_film_genres_genre_film ON film_genres(genre_id, film_id);
+CREATE INDEX IF NOT EXISTS idx_films_release_date ON films(release_date);
+CREATE INDEX IF NOT EXISTS idx_likes_user_film ON likes(user_id, film_id);
+CREATE INDEX IF NOT EXISTS idx_likes_created_at ON likes(created_at);
+
+-- Журнал изменений таблиц, из которых строятся in-memory индексы (пишет EventLogTrigger).
+-- Id событий берутся из последовательности change_counter, по ней же ReadModelSnapshot проверяет снимок индексов
+CREATE SEQUENCE IF NOT EXISTS change_counter;
+CREATE TABLE IF NOT EXISTS events(
+    id BIGINT DEFAULT NEXT VALUE FOR change_counter PRIMARY KEY,
+    type VARCHAR(16) NOT NULL,
+    subject_id BIGINT NOT NULL,
+    object_id BIGINT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+-- Контрольные точки потребителей журнала: id события, до которого журнал уже учтён
+CREATE TABLE IF NOT EXISTS projection_checkpoints(
+    name VARCHAR(64) PRIMARY KEY,
+    event_id BIGINT NOT NULL
+);
+
+-- Триггеры счётчика изменений из прежних версий схемы заменены журналом событий
+DROP TRIGGER IF EXISTS films_change_counter;
+DROP TRIGGER IF EXISTS film_genres_change_counter;
+DROP TRIGGER IF EXISTS likes_change_counter;
+DROP TRIGGER IF EXISTS friendships_change_counter;
+
+CREATE TRIGGER IF NOT EXISTS films_events AFTER INSERT, UPDATE, DELETE ON films
+    FOR EACH ROW CALL 'ru.yandex.practicum.filmorate.storage.EventLogTrigger';
+CREATE TRIGGER IF NOT EXISTS film_genres_events AFTER INSERT, DELETE ON film_genres
+    FOR EACH ROW CALL 'ru.yandex.practicum.filmorate.storage.EventLogTrigger';
+CREATE TRIGGER IF NOT EXISTS likes_events AFTER INSERT, DELETE ON likes
+    FOR EACH ROW CALL 'ru.yandex.practicum.filmorate.storage.EventLogTrigger';
+CREATE TRIGGER IF NOT EXISTS friendships_events AFTER INSERT, DELETE ON friendships
+    FOR EACH ROW CALL 'ru.yandex.practicum.filmorate.storage.EventLogTrigger';
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.EventLog;
+import ru.yandex.practicum.filmorate.storage.ReadModelSnapshot;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBehindQueue;
+import ru.yandex.practicum.filmorate.storage.film.LikesMatrixIndex;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.film.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.film.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraphIndex;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@TestPropertySource(properties = {"filmorate.search.index-file=", "filmorate.snapshot.file="})
+@Import({FilmDbStorage.class, UserDbStorage.class, PopularFilmsIndex.class, ReferenceDataCache.class,
+        LikeWriteBehindQueue.class, LikesMatrixIndex.class, FilmSearchIndex.class, FriendGraphIndex.class,
+        TrendingFilmsIndex.class, EventLog.class, ReadModelSnapshot.class, StatementCounter.class})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmDbStorageStatementCountTests {
+    private static final int FILMS_COUNT = 20;
+
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final StatementCounter statementCounter;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setEmail("test@example.com");
+        user.setLogin("testlogin");
+        user.setName("Test User");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        User savedUser = userStorage.addUser(user);
+
+        for (int i = 0; i < FILMS_COUNT; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setDescription("Description " + i);
+            film.setReleaseDate(LocalDate.of(2023, 1, 1));
+            film.setDuration(120);
+            film.setMpa(new MpaRating(1, null));
+            film.setGenres(Set.of(new Genre(1, null), new Genre(2, null)));
+            Film savedFilm = filmStorage.addFilm(film);
+            filmStorage.addLike(savedFilm.getId(), savedUser.getId());
+        }
+        statementCounter.reset();
+    }
+
+    @Test
+    void testGetAllFilmsUsesFixedNumberOfStatements() {
+        Collection<Film> films = filmStorage.getAllFilms();
+
+        Assertions.assertThat(films).hasSize(FILMS_COUNT);
+        Assertions.assertThat(films).allSatisfy(film -> {
+            Assertions.assertThat(film.getGenres()).hasSize(2);
+            Assertions.assertThat(film.getLikes()).hasSize(1);
+        });
+        Assertions.assertThat(statementCounter.getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void testGetPopularFilmsUsesFixedNumberOfStatements() {
+        List<Film> films = filmStorage.getPopularFilms(FILMS_COUNT);
+
+        Assertions.assertThat(films).hasSize(FILMS_COUNT);
+        Assertions.assertThat(films.get(0).getLikes()).hasSize(1);
+        Assertions.assertThat(statementCounter.getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void testSummaryViewSkipsLikesQuery() {
+        List<Film> films = filmStorage.getPopularFilms(FILMS_COUNT, null, null, View.SUMMARY);
+
+        Assertions.assertThat(films).hasSize(FILMS_COUNT);
+        Assertions.assertThat(films).allSatisfy(film -> {
+            Assertions.assertThat(film.getLikes()).isNull();
+            Assertions.assertThat(film.getLikesCount()).isEqualTo(1);
+        });
+        Assertions.assertThat(statementCounter.getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testAddFilmUsesTwoStatements() {
+        Film film = new Film();
+        film.setName("New Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2023, 1, 1));
+        film.setDuration(120);
+        film.setMpa(new MpaRating(1, null));
+        film.setGenres(Set.of(new Genre(2, null), new Genre(1, null)));
+
+        Film saved = filmStorage.addFilm(film);
+
+        Assertions.assertThat(statementCounter.getCount()).isEqualTo(2);
+        Assertions.assertThat(saved.getMpa().getName()).isNotNull();
+        Assertions.assertThat(saved.getGenres()).extracting(Genre::getId).containsExactly(1, 2);
+    }
+
+    @Test
+    void testAddFilmWithUnknownGenreIsRejectedByForeignKey() {
+        Film film = new Film();
+        film.setName("New Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2023, 1, 1));
+        film.setDuration(120);
+        film.setMpa(new MpaRating(1, null));
+        film.setGenres(Set.of(new Genre(999, null)));
+
+        Assertions.assertThatThrownBy(() -> filmStorage.addFilm(film)).isInstanceOf(NotFoundException.class);
+    }
+}
@@ -1,29 +1,61 @@
 package ru.yandex.practicum.filmorate;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.controller.JsonResponseCache;
 import ru.yandex.practicum.filmorate.model.*;
+import ru.yandex.practicum.filmorate.storage.EventLog;
+import ru.yandex.practicum.filmorate.storage.ReadModelSnapshot;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBehindQueue;
+import ru.yandex.practicum.filmorate.storage.film.LikesMatrixIndex;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.film.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.film.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraphIndex;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 @JdbcTest
 @AutoConfigureTestDatabase
-@Import({FilmDbStorage.class, UserDbStorage.class, })
+@TestPropertySource(properties = {"filmorate.search.index-file=", "filmorate.snapshot.file="})
+@Import({FilmDbStorage.class, UserDbStorage.class, PopularFilmsIndex.class, ReferenceDataCache.class,
+        LikeWriteBehindQueue.class, LikesMatrixIndex.class, FilmSearchIndex.class, FriendGraphIndex.class,
+        TrendingFilmsIndex.class, EventLog.class, ReadModelSnapshot.class})
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 class FilmorateApplicationTests {
 
     private final FilmDbStorage filmStorage;
     private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final EventLog eventLog;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final LikesMatrixIndex likesMatrix;
+    private final FriendGraphIndex friendGraph;
+    private final TrendingFilmsIndex trendingIndex;
 
     @Test
     void testCreateAndGetFilm() {
@@ -61,6 +93,30 @@ class FilmorateApplicationTests {
         Assertions.assertThat(films).isNotEmpty();
     }
 
+    @Test
+    void testGetFilmsPageByCursor() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setDescription("Description " + i);
+            film.setReleaseDate(LocalDate.of(2023, 1, 1));
+            film.setDuration(120);
+            film.setMpa(new MpaRating(1, null));
+            ids.add(filmStorage.addFilm(film).getId());
+        }
+
+        List<Film> firstPage = filmStorage.getFilms(ids.get(0) - 1, 2);
+        List<Film> secondPage = filmStorage.getFilms(firstPage.get(1).getId(), 2);
+
+        Assertions.assertThat(firstPage).extracting(Film::getId).containsExactly(ids.get(0), ids.get(1));
+        Assertions.assertThat(secondPage).extracting(Film::getId).containsExactly(ids.get(2), ids.get(3));
+
+        List<Long> streamed = new ArrayList<>();
+        filmStorage.forEachFilm(2, film -> streamed.add(film.getId()));
+        Assertions.assertThat(streamed).containsExactlyElementsOf(ids);
+    }
+
     @Test
     void testCreateAndUpdateFilm() {
         Film film = new Film();
@@ -80,6 +136,63 @@ class FilmorateApplicationTests {
         Assertions.assertThat(updatedFilm.getName()).isEqualTo("Updated Film");
     }
 
+    @Test
+    void testFilmCacheIsInvalidatedOnUpdate() {
+        Film film = new Film();
+        film.setName("Test Film");
+        film.setDescription("Test Description");
+        film.setReleaseDate(LocalDate.of(2024, 1, 1));
+        film.setDuration(120);
+        film.setMpa(new MpaRating(1, null));
+
+        Film savedFilm = filmStorage.addFilm(film);
+        long hitsBefore = filmStorage.getFilmCacheStats().hits();
+        filmStorage.getFilmById(savedFilm.getId()).setName("Changed outside storage");
+        Assertions.assertThat(filmStorage.getFilmById(savedFilm.getId()).getName()).isEqualTo("Test Film");
+        Assertions.assertThat(filmStorage.getFilmCacheStats().hits()).isEqualTo(hitsBefore + 2);
+
+        savedFilm.setName("Updated Film");
+        filmStorage.updateFilm(savedFilm);
+        Assertions.assertThat(filmStorage.getFilmById(savedFilm.getId()).getName()).isEqualTo("Updated Film");
+    }
+
+    @Test
+    void testSearchFilms() {
+        List<String[]> films = List.of(
+                new String[]{"Матрица", "Фантастика о хакере"},
+                new String[]{"Ёлки", "Новогодняя комедия про матрёшку"},
+                new String[]{"Брат", "Криминальная драма"});
+        List<Long> ids = new ArrayList<>();
+        for (String[] text : films) {
+            Film film = new Film();
+            film.setName(text[0]);
+            film.setDescription(text[1]);
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(120);
+            film.setMpa(new MpaRating(1, null));
+            ids.add(filmStorage.addFilm(film).getId());
+        }
+
+        Set<FilmSearchIndex.Field> titleOnly = Set.of(FilmSearchIndex.Field.TITLE);
+        Set<FilmSearchIndex.Field> allFields = Set.of(FilmSearchIndex.Field.TITLE, FilmSearchIndex.Field.DESCRIPTION);
+
+        Assertions.assertThat(filmStorage.searchFilms("ЕЛКИ", titleOnly, 10)).extracting(Film::getId)
+                .containsExactly(ids.get(1));
+        Assertions.assertThat(filmStorage.searchFilms("матр", titleOnly, 10)).extracting(Film::getId)
+                .containsExactly(ids.get(0));
+        Assertions.assertThat(filmStorage.searchFilms("матр", allFields, 10)).extracting(Film::getId)
+                .containsExactly(ids.get(0), ids.get(1));
+
+        Film updated = filmStorage.getFilmById(ids.get(2));
+        updated.setName("Брат 2");
+        updated.setDescription("Продолжение про хакера");
+        filmStorage.updateFilm(updated);
+
+        Assertions.assertThat(filmStorage.searchFilms("хакер", allFields, 10)).extracting(Film::getId)
+                .containsExactlyInAnyOrder(ids.get(0), ids.get(2));
+        Assertions.assertThat(filmStorage.searchFilms("криминальная", allFields, 10)).isEmpty();
+    }
+
     @Test
     void testGetUserById() {
         User user = new User();
@@ -147,6 +260,31 @@ class FilmorateApplicationTests {
         Assertions.assertThat(friends.get(0).getId()).isEqualTo(savedUser2.getId());
     }
 
+    @Test
+    void testCompactFriendsKeepJsonShape() throws Exception {
+        User user = new User();
+        user.setEmail("user@test.com");
+        user.setLogin("user");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        User savedUser = userStorage.addUser(user);
+        for (long friendId : new long[]{3, 1, 2}) {
+            User friend = new User();
+            friend.setEmail("friend" + friendId + "@test.com");
+            friend.setLogin("friend" + friendId);
+            friend.setBirthday(LocalDate.of(1990, 1, 1));
+            userStorage.addFriend(savedUser.getId(), userStorage.addUser(friend).getId(), FriendshipStatus.PENDING);
+        }
+
+        User found = userStorage.getUserById(savedUser.getId());
+        Assertions.assertThat(found.getFriends()).isInstanceOf(CompactFriendMap.class).hasSize(3);
+
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+        String json = mapper.writeValueAsString(found);
+        Assertions.assertThat(mapper.readTree(json).get("friends").isObject()).isTrue();
+        User parsed = mapper.readValue(json, User.class);
+        Assertions.assertThat(parsed.getFriends()).isInstanceOf(CompactFriendMap.class).isEqualTo(found.getFriends());
+    }
+
     @Test
     void testDeleteFriend() {
         User user1 = new User();
@@ -201,6 +339,40 @@ class FilmorateApplicationTests {
         Assertions.assertThat(commonFriends.get(0).getId()).isEqualTo(savedUser3.getId());
     }
 
+    @Test
+    void testGetFriendRecommendations() {
+        User user1 = new User();
+        user1.setEmail("user1@test.com");
+        user1.setLogin("user1");
+        user1.setName("User One");
+        user1.setBirthday(LocalDate.of(1990, 1, 1));
+        User savedUser1 = userStorage.addUser(user1);
+
+        User user2 = new User();
+        user2.setEmail("user2@test.com");
+        user2.setLogin("user2");
+        user2.setName("User Two");
+        user2.setBirthday(LocalDate.of(1992, 2, 2));
+        User savedUser2 = userStorage.addUser(user2);
+
+        User user3 = new User();
+        user3.setEmail("user3@test.com");
+        user3.setLogin("user3");
+        user3.setName("User Three");
+        user3.setBirthday(LocalDate.of(1993, 3, 3));
+        User savedUser3 = userStorage.addUser(user3);
+
+        userStorage.addFriend(savedUser1.getId(), savedUser3.getId(), FriendshipStatus.CONFIRMED);
+        userStorage.addFriend(savedUser2.getId(), savedUser3.getId(), FriendshipStatus.CONFIRMED);
+
+        List<User> recommendations = userStorage.getFriendRecommendations(savedUser1.getId(), 10);
+        Assertions.assertThat(recommendations).extracting(User::getId).containsExactly(savedUser2.getId());
+
+        userStorage.deleteFriend(savedUser1.getId(), savedUser3.getId());
+
+        Assertions.assertThat(userStorage.getFriendRecommendations(savedUser1.getId(), 10)).isEmpty();
+    }
+
     @Test
     void testAddAndDeleteLike() {
         User user = new User();
@@ -228,6 +400,105 @@ class FilmorateApplicationTests {
         Assertions.assertThat(foundFilm.getLikes()).isEmpty();
     }
 
+    @Test
+    void testVersionsChangeOnUpdatesAndLikes() {
+        User user = new User();
+        user.setEmail("test@example.com");
+        user.setLogin("testlogin");
+        user.setName("Test User");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        User savedUser = userStorage.addUser(user);
+
+        Film film = new Film();
+        film.setName("Test Film");
+        film.setDescription("Test Description");
+        film.setReleaseDate(LocalDate.of(2023, 1, 1));
+        film.setDuration(120);
+
+        MpaRating mpa = new MpaRating();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        Film savedFilm = filmStorage.addFilm(film);
+
+        long filmVersion = filmStorage.getFilmVersion(savedFilm.getId());
+        String popularVersion = filmStorage.getPopularFilmsVersion();
+        filmStorage.addLike(savedFilm.getId(), savedUser.getId());
+        Assertions.assertThat(filmStorage.getFilmVersion(savedFilm.getId())).isGreaterThan(filmVersion);
+        Assertions.assertThat(filmStorage.getPopularFilmsVersion()).isNotEqualTo(popularVersion);
+
+        filmVersion = filmStorage.getFilmVersion(savedFilm.getId());
+        savedFilm.setName("Updated Film");
+        filmStorage.updateFilm(savedFilm);
+        Assertions.assertThat(filmStorage.getFilmVersion(savedFilm.getId())).isGreaterThan(filmVersion);
+
+        long userVersion = userStorage.getUserVersion(savedUser.getId());
+        savedUser.setName("Updated User");
+        userStorage.updateUser(savedUser);
+        Assertions.assertThat(userStorage.getUserVersion(savedUser.getId())).isGreaterThan(userVersion);
+    }
+
+    @Test
+    void testGetRecommendedFilms() {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@test.com");
+            user.setLogin("user" + i);
+            user.setName("User " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            userIds.add(userStorage.addUser(user).getId());
+        }
+
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setDescription("Description " + i);
+            film.setReleaseDate(LocalDate.of(2023, 1, 1));
+            film.setDuration(120);
+            film.setMpa(new MpaRating(1, null));
+            filmIds.add(filmStorage.addFilm(film).getId());
+        }
+
+        filmStorage.addLike(filmIds.get(0), userIds.get(0));
+        filmStorage.addLike(filmIds.get(1), userIds.get(0));
+        filmStorage.addLike(filmIds.get(0), userIds.get(1));
+        filmStorage.addLike(filmIds.get(2), userIds.get(1));
+
+        Assertions.assertThat(filmStorage.getRecommendedFilms(userIds.get(0), 10))
+                .extracting(Film::getId)
+                .containsExactly(filmIds.get(2));
+
+        filmStorage.deleteLike(filmIds.get(0), userIds.get(0));
+
+        Assertions.assertThat(filmStorage.getRecommendedFilms(userIds.get(0), 10)).isEmpty();
+    }
+
+    @Test
+    void testAddLikesInBatch() {
+        User user = new User();
+        user.setEmail("test@example.com");
+        user.setLogin("testlogin");
+        user.setName("Test User");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        User savedUser = userStorage.addUser(user);
+
+        Film film = new Film();
+        film.setName("Test Film");
+        film.setDescription("Test Description");
+        film.setReleaseDate(LocalDate.of(2023, 1, 1));
+        film.setDuration(120);
+        film.setMpa(new MpaRating(1, null));
+        Film savedFilm = filmStorage.addFilm(film);
+
+        Like like = new Like(savedFilm.getId(), savedUser.getId());
+        boolean[] added = filmStorage.addLikes(List.of(like, like));
+
+        Assertions.assertThat(added).containsExactly(true, false);
+        Assertions.assertThat(filmStorage.getFilmById(savedFilm.getId()).getLikes())
+                .containsExactly(savedUser.getId());
+    }
+
     @Test
     void testGetPopularFilms() {
         User user = new User();
@@ -264,4 +535,167 @@ class FilmorateApplicationTests {
         Assertions.assertThat(popularFilms.get(0).getId()).isEqualTo(savedFilm1.getId());
     }
 
+    @Test
+    void testGetPopularFilmsByGenreAndYear() {
+        User user = new User();
+        user.setEmail("test@example.com");
+        user.setLogin("testlogin");
+        user.setName("Test User");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        User savedUser = userStorage.addUser(user);
+
+        int[][] genreAndYear = {{1, 1901}, {2, 1901}, {1, 1902}};
+        List<Film> saved = new ArrayList<>();
+        for (int[] attributes : genreAndYear) {
+            Film film = new Film();
+            film.setName("Film " + saved.size());
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(attributes[1], 1, 1));
+            film.setDuration(120);
+            film.setMpa(new MpaRating(1, null));
+            film.setGenres(new LinkedHashSet<>(List.of(new Genre(attributes[0], null))));
+            saved.add(filmStorage.addFilm(film));
+        }
+        filmStorage.addLike(saved.get(2).getId(), savedUser.getId());
+
+        Assertions.assertThat(filmStorage.getPopularFilms(10, 1, null)).extracting(Film::getId)
+                .containsExactly(saved.get(2).getId(), saved.get(0).getId());
+        Assertions.assertThat(filmStorage.getPopularFilms(10, null, 1901)).extracting(Film::getId)
+                .containsExactly(saved.get(0).getId(), saved.get(1).getId());
+        Assertions.assertThat(filmStorage.getPopularFilms(10, 1, 1901)).extracting(Film::getId)
+                .containsExactly(saved.get(0).getId());
+
+        Film updated = saved.get(0);
+        updated.setGenres(new LinkedHashSet<>(List.of(new Genre(2, null))));
+        filmStorage.updateFilm(updated);
+
+        Assertions.assertThat(filmStorage.getPopularFilms(10, 1, 1901)).isEmpty();
+    }
+
+    @Test
+    void testReadModelSnapshotRestoresIndexes(@TempDir Path directory) throws IOException {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@test.com");
+            user.setLogin("user" + i);
+            user.setName("User " + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            userIds.add(userStorage.addUser(user).getId());
+        }
+        Film film = new Film();
+        film.setName("Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2023, 1, 1));
+        film.setDuration(120);
+        film.setMpa(new MpaRating(1, null));
+        film.setGenres(new LinkedHashSet<>(List.of(new Genre(1, null))));
+        Long filmId = filmStorage.addFilm(film).getId();
+        filmStorage.addLike(filmId, userIds.get(0));
+        userStorage.addFriend(userIds.get(0), userIds.get(1), FriendshipStatus.CONFIRMED);
+
+        Path file = directory.resolve("read-model.snapshot");
+        ReadModelSnapshot saved = new ReadModelSnapshot(jdbcTemplate, eventLog, popularFilmsIndex, likesMatrix,
+                friendGraph, file.toString(), 0);
+        saved.save();
+        Path olderFile = Files.copy(file, directory.resolve("older.snapshot"));
+
+        PopularFilmsIndex restoredFilms = new PopularFilmsIndex();
+        LikesMatrixIndex restoredLikes = new LikesMatrixIndex();
+        FriendGraphIndex restoredFriends = new FriendGraphIndex(0);
+        ReadModelSnapshot snapshot = new ReadModelSnapshot(jdbcTemplate, eventLog, restoredFilms, restoredLikes,
+                restoredFriends, file.toString(), 0);
+        snapshot.load();
+
+        Assertions.assertThat(snapshot.restoreFilms()).isTrue();
+        Assertions.assertThat(snapshot.restoreFriends()).isTrue();
+        Assertions.assertThat(restoredFilms.getFilm(filmId)).isEqualTo(popularFilmsIndex.getFilm(filmId));
+        Assertions.assertThat(restoredLikes.getUsers(filmId)).containsExactly(userIds.get(0));
+        Assertions.assertThat(restoredFriends.getFriends(userIds.get(0))).containsExactly(userIds.get(1));
+
+        filmStorage.deleteLike(filmId, userIds.get(0));
+        filmStorage.addLike(filmId, userIds.get(1));
+        userStorage.deleteFriend(userIds.get(0), userIds.get(1));
+        ReadModelSnapshot caughtUp = new ReadModelSnapshot(jdbcTemplate, eventLog, restoredFilms, restoredLikes,
+                restoredFriends, file.toString(), 0);
+        caughtUp.load();
+
+        Assertions.assertThat(caughtUp.restoreFilms()).isTrue();
+        Assertions.assertThat(caughtUp.restoreFriends()).isTrue();
+        Assertions.assertThat(restoredFilms.getFilm(filmId)).isEqualTo(popularFilmsIndex.getFilm(filmId));
+        Assertions.assertThat(restoredLikes.getUsers(filmId)).containsExactly(userIds.get(1));
+        Assertions.assertThat(restoredFriends.getFriends(userIds.get(0))).isEmpty();
+
+        saved.save();
+        Files.copy(olderFile, file, StandardCopyOption.REPLACE_EXISTING);
+        ReadModelSnapshot stale = new ReadModelSnapshot(jdbcTemplate, eventLog, new PopularFilmsIndex(),
+                new LikesMatrixIndex(), new FriendGraphIndex(0), file.toString(), 0);
+        stale.load();
+
+        Assertions.assertThat(stale.restoreFilms()).isFalse();
+    }
+
+    @Test
+    void testTrendingFilmsCountOnlyLikesInWindow() {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            User user = new User();
+            user.setEmail("trend" + i + "@test.com");
+            user.setLogin("trend" + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            userIds.add(userStorage.addUser(user).getId());
+        }
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Film film = new Film();
+            film.setName("Trend " + i);
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(2023, 1, 1));
+            film.setDuration(100);
+            film.setMpa(new MpaRating(1, null));
+            filmIds.add(filmStorage.addFilm(film).getId());
+        }
+        filmStorage.addLike(filmIds.get(0), userIds.get(0));
+        filmStorage.addLike(filmIds.get(0), userIds.get(1));
+        filmStorage.addLike(filmIds.get(1), userIds.get(0));
+        long twoHoursAgo = System.currentTimeMillis() - Duration.ofHours(2).toMillis();
+        trendingIndex.addLike(filmIds.get(1), userIds.get(1), twoHoursAgo);
+        trendingIndex.addLike(filmIds.get(1), userIds.get(2), twoHoursAgo);
+
+        Assertions.assertThat(filmStorage.getTrendingFilms(10, TrendingWindow.HOUR, View.FULL)).extracting(Film::getId)
+                .containsExactly(filmIds.get(0), filmIds.get(1));
+        Assertions.assertThat(filmStorage.getTrendingFilms(10, TrendingWindow.DAY, View.FULL)).extracting(Film::getId)
+                .containsExactly(filmIds.get(1), filmIds.get(0));
+
+        filmStorage.deleteLike(filmIds.get(0), userIds.get(0));
+        filmStorage.deleteLike(filmIds.get(0), userIds.get(1));
+
+        Assertions.assertThat(filmStorage.getTrendingFilms(10, TrendingWindow.HOUR, View.FULL)).extracting(Film::getId)
+                .containsExactly(filmIds.get(1));
+    }
+
+    @Test
+    void testJsonResponseCacheSerializesOncePerVersion() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+        JsonResponseCache cache = new JsonResponseCache(mapper, 1_000_000);
+        AtomicInteger loads = new AtomicInteger();
+
+        byte[] first = cache.json("popular", "1", () -> {
+            loads.incrementAndGet();
+            return filmStorage.getPopularFilms(10);
+        }).getBody();
+        byte[] second = cache.json("popular", "1", () -> {
+            loads.incrementAndGet();
+            return filmStorage.getPopularFilms(10);
+        }).getBody();
+        Assertions.assertThat(second).isSameAs(first);
+        Assertions.assertThat(loads).hasValue(1);
+        Assertions.assertThat(mapper.readTree(first)).isEqualTo(mapper.valueToTree(filmStorage.getPopularFilms(10)));
+
+        cache.json("popular", "2", () -> {
+            loads.incrementAndGet();
+            return filmStorage.getPopularFilms(10);
+        });
+        Assertions.assertThat(loads).hasValue(2);
+    }
 }